@@ -0,0 +1,56 @@
+package benchmark;
+
+import service.BookService;
+import service.BookSort;
+import service.ColumnarLibrary;
+import service.Library;
+
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Measures retained heap per book for the object-per-book {@link BookService} and the
+ * columnar {@link ColumnarLibrary}, including every index each engine keeps.
+ * <p>
+ * Usage: {@code java -Xmx4g -cp out benchmark.CatalogMemoryBenchmark [sizes]}, e.g.
+ * {@code 100000,1000000}. Sizes default to 100k and 1M books.
+ */
+public class CatalogMemoryBenchmark {
+
+    public static void main(String[] args) {
+        String[] sizes = (args.length > 0 ? args[0] : "100000,1000000").split(",");
+        for (String value : sizes) {
+            int size = Integer.parseInt(value.trim());
+            List<String[]> records = new SyntheticCatalog(size, 0, 42L).books();
+            System.out.println("\n=== Catalog of " + size + " books ===");
+            System.out.println(measure("BookService", BookService::new, records));
+            System.out.println(measure("ColumnarLibrary", ColumnarLibrary::new, records));
+        }
+    }
+
+    private static String measure(String name, Supplier<Library> engine, List<String[]> records) {
+        long before = usedHeap();
+        Library library = engine.get();
+        for (String[] record : records) {
+            // Fresh strings, so the catalog's own copies are not counted as shared
+            library.create(new String(record[0]), new String(record[1]), new String(record[2]));
+        }
+        // Build the sorted listing orders, which the columnar engine creates lazily
+        library.list(BookSort.TITLE, null, null, 1);
+        library.list(BookSort.ISBN, null, null, 1);
+        long after = usedHeap();
+        Reference.reachabilityFence(library);
+
+        double perRecord = (after - before) / (double) records.size();
+        return String.format("%-16s %10.1f bytes/book %10.1f MB total", name, perRecord, (after - before) / 1048576.0);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,182 @@
+package benchmark;
+
+import metrics.MetricsRegistry;
+import model.Book;
+import model.Hold;
+import model.Member;
+import service.BookService;
+import service.HoldResult;
+import service.LibraryEventListener;
+import service.LoanResult;
+import service.LoanService;
+import service.MemberService;
+import service.OverdueScheduler;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event simulation of the loan lifecycle against the real services at accelerated time.
+ * Check-outs arrive at random times through each simulated day, skewed toward popular titles;
+ * every loan schedules its own return, mostly on time and sometimes late, and members who find
+ * no copy may place a hold and pick up the copy when it is set aside for them. The overdue
+ * scheduler runs at every simulated midnight. Events run in time order on one thread while a
+ * simulated clock is moved to each event's time, so runs are reproducible for a given seed.
+ * <p>
+ * Usage: {@code java -cp out benchmark.CirculationSimulation [days] [checkoutsPerDay] [books] [members]},
+ * e.g. {@code 365 10000 100000 20000}, which replays about 3.6 million check-outs.
+ */
+public class CirculationSimulation {
+
+    private static final long SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1);
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    // Share of loans returned after the one-month due date, and of failed check-outs followed by a hold
+    private static final double LATE_RETURN_SHARE = 0.15;
+    private static final double HOLD_SHARE = 0.30;
+
+    private enum Kind {
+        CHECK_OUT,
+        RETURN,
+        PICK_UP,
+        MIDNIGHT
+    }
+
+    /**
+     * A scheduled event; the sequence number keeps events at the same second in scheduling order.
+     */
+    private record Event(long second, long sequence, Kind kind, Member member, Book book) implements Comparable<Event> {
+        @Override
+        public int compareTo(Event other) {
+            int bySecond = Long.compare(second, other.second);
+            return bySecond != 0 ? bySecond : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final SplittableRandom random;
+    private final SimulatedClock clock;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LoanService loans;
+    private final OverdueScheduler scheduler;
+    private final SyntheticCatalog catalog;
+    private final Book[] books;
+    private final Member[] members;
+
+    private long sequence;
+    private long processed;
+    private long overdueNotices;
+    private final Map<HoldResult.Outcome, Long> holdOutcomes = new EnumMap<>(HoldResult.Outcome.class);
+
+    private CirculationSimulation(int bookCount, int memberCount, long seed) {
+        random = new SplittableRandom(seed);
+        clock = new SimulatedClock(START.atStartOfDay(ZoneOffset.UTC).toEpochSecond());
+        loans = new LoanService(metrics, clock);
+        scheduler = new OverdueScheduler(loans, (loan, today, fee) -> overdueNotices++, START);
+        loans.setEventListener(new LibraryEventListener() {
+            @Override
+            public void holdReady(Hold hold) {
+                // Most holders come in within the three-day pickup window, some never do
+                schedule(now() + randomSeconds(5), Kind.PICK_UP, hold.getMember(), hold.getBook());
+            }
+        });
+
+        catalog = new SyntheticCatalog(bookCount, memberCount, seed);
+        BookService bookService = new BookService(metrics);
+        MemberService memberService = new MemberService(metrics, clock);
+        bookService.bulkCreate(catalog.books().stream());
+        memberService.bulkCreate(catalog.members().stream());
+        books = new Book[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            books[i] = bookService.findBookByIsbn(catalog.isbn(i));
+        }
+        members = memberService.list().toArray(new Member[0]);
+    }
+
+    public static void main(String[] args) {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+        int checkoutsPerDay = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int bookCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int memberCount = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+
+        CirculationSimulation simulation = new CirculationSimulation(bookCount, memberCount, 42L);
+        long start = System.nanoTime();
+        simulation.run(days, checkoutsPerDay);
+        long elapsed = System.nanoTime() - start;
+        simulation.report(days, elapsed);
+    }
+
+    private void run(int days, int checkoutsPerDay) {
+        long first = clock.instant().getEpochSecond();
+        for (int day = 0; day < days; day++) {
+            schedule(first + day * SECONDS_PER_DAY, Kind.MIDNIGHT, null, null);
+        }
+
+        long end = first + days * SECONDS_PER_DAY;
+        Event event;
+        while ((event = events.poll()) != null && event.second() < end) {
+            clock.set(event.second());
+            processed++;
+            switch (event.kind()) {
+                case CHECK_OUT -> checkOut(event.member(), event.book(), true);
+                case PICK_UP -> checkOut(event.member(), event.book(), false);
+                case RETURN -> loans.returnBook(event.book(), event.member());
+                case MIDNIGHT -> {
+                    // Arrivals are generated a day at a time so the queue holds open loans, not the whole run
+                    scheduler.runFor(LocalDate.now(clock));
+                    scheduleArrivals(event.second(), checkoutsPerDay);
+                }
+            }
+        }
+    }
+
+    private void scheduleArrivals(long dayStart, int count) {
+        for (int i = 0; i < count; i++) {
+            Member member = members[random.nextInt(members.length)];
+            Book book = books[catalog.skewedBook(random.nextInt())];
+            schedule(dayStart + random.nextLong(SECONDS_PER_DAY), Kind.CHECK_OUT, member, book);
+        }
+    }
+
+    private void checkOut(Member member, Book book, boolean mayHold) {
+        LoanResult result = loans.checkOut(member, book);
+        if (result.outcome() == LoanResult.Outcome.CHECKED_OUT) {
+            boolean late = random.nextDouble() < LATE_RETURN_SHARE;
+            // On time: 1-30 days; late: 1-30 days past the one-month due date
+            long keptFor = late ? randomSeconds(31) + 30 * SECONDS_PER_DAY : randomSeconds(30);
+            schedule(now() + keptFor, Kind.RETURN, member, book);
+        } else if (result.outcome() == LoanResult.Outcome.ALREADY_CHECKED_OUT && mayHold
+                && random.nextDouble() < HOLD_SHARE) {
+            holdOutcomes.merge(loans.placeHold(member, book).outcome(), 1L, Long::sum);
+        }
+    }
+
+    private void schedule(long second, Kind kind, Member member, Book book) {
+        events.add(new Event(second, sequence++, kind, member, book));
+    }
+
+    private long now() {
+        return clock.instant().getEpochSecond();
+    }
+
+    // Random duration between 1 second and the given number of days
+    private long randomSeconds(int days) {
+        return 1 + random.nextLong(days * SECONDS_PER_DAY);
+    }
+
+    private void report(int days, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Simulated %d days (%s to %s) in %.2f s%n", days, START, LocalDate.now(clock), seconds);
+        System.out.printf("Events processed: %d (%.0f events/s)%n", processed, processed / seconds);
+        System.out.println("Overdue notices: " + overdueNotices);
+        System.out.println("Hold requests: " + holdOutcomes);
+        System.out.println("Events still pending: " + events.size());
+        System.out.println();
+        System.out.print(metrics.toText());
+    }
+}
@@ -0,0 +1,105 @@
+package benchmark;
+
+import model.Book;
+import model.Member;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import service.BookService;
+import service.LoanService;
+import service.MemberService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for a check-out followed by the matching return, on one thread with skewed
+ * title popularity and on every core fighting over a few hot titles. After each trial every
+ * copy must be back on the shelf with no loan left open; otherwise the trial fails.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// A 10M-book catalog needs about 10 GB of heap
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@State(Scope.Benchmark)
+public class LoanBenchmark {
+
+    // Number of popular titles every thread fights over in the contention benchmark
+    private static final int HOT_TITLES = 16;
+
+    // Members each thread cycles through; threads never share a member
+    private static final int MEMBERS_PER_THREAD = 31;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int size;
+
+    private SyntheticCatalog catalog;
+    private Book[] books;
+    private Member[] members;
+    private LoanService loans;
+
+    /**
+     * Per-thread access counter and member range.
+     */
+    @State(Scope.Thread)
+    public static class Borrower {
+        int next;
+        int firstMember;
+
+        @Setup
+        public void setUp(ThreadParams thread) {
+            firstMember = thread.getThreadIndex() * MEMBERS_PER_THREAD;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        catalog = new SyntheticCatalog(size, Math.max(1_000, size / 10), 42L);
+        BookService bookService = new BookService();
+        MemberService memberService = new MemberService();
+        bookService.bulkCreate(catalog.books().stream());
+        memberService.bulkCreate(catalog.members().stream());
+        loans = new LoanService();
+
+        books = new Book[size];
+        for (int i = 0; i < size; i++) {
+            books[i] = bookService.findBookByIsbn(catalog.isbn(i));
+        }
+        members = memberService.list().toArray(new Member[0]);
+    }
+
+    @Benchmark
+    public void checkOutAndReturnSkewed(Borrower borrower, Blackhole blackhole) {
+        int i = borrower.next++;
+        Book book = books[catalog.skewedBook(i)];
+        Member member = members[(borrower.firstMember + i % MEMBERS_PER_THREAD) % members.length];
+        blackhole.consume(loans.checkOut(member, book));
+        blackhole.consume(loans.returnBook(book, member));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void checkOutAndReturnHotTitles(Borrower borrower, Blackhole blackhole) {
+        int i = borrower.next++;
+        Book book = books[i % HOT_TITLES];
+        Member member = members[(borrower.firstMember + i % MEMBERS_PER_THREAD) % members.length];
+        blackhole.consume(loans.checkOut(member, book));
+        blackhole.consume(loans.returnBook(book, member));
+    }
+
+    // Balanced check-outs and returns must leave every copy on the shelf and no loan open
+    @TearDown(Level.Trial)
+    public void verifyNoOpenLoans() {
+        for (Book book : books) {
+            if (book.getAvailableCopies() != book.getCopies()) {
+                throw new IllegalStateException(book.getIsbn() + " has copies still checked out");
+            }
+        }
+        for (Member member : members) {
+            if (!loans.getActiveLoans(member).isEmpty()) {
+                throw new IllegalStateException(member.getEmail() + " still has open loans");
+            }
+        }
+    }
+}
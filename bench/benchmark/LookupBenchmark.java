@@ -0,0 +1,84 @@
+package benchmark;
+
+import model.Book;
+import model.Member;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import service.BookService;
+import service.ISBNValidator;
+import service.MemberService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for ISBN validation and the ISBN, title and email lookups against synthetic
+ * catalogs with skewed title popularity. Every benchmark returns its result, so JMH consumes it
+ * and the JIT cannot drop the lookup as dead code.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// A 10M-book catalog needs about 10 GB of heap
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int size;
+
+    private SyntheticCatalog catalog;
+    private BookService books;
+    private MemberService members;
+    private int memberCount;
+
+    /**
+     * Per-thread access counter, so threads walk the skewed samples independently.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        @Setup
+        public void setUp(ThreadParams thread) {
+            next = thread.getThreadIndex() * 7919;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        memberCount = Math.max(1_000, size / 10);
+        catalog = new SyntheticCatalog(size, memberCount, 42L);
+        books = new BookService();
+        members = new MemberService();
+        books.bulkCreate(catalog.books().stream());
+        members.bulkCreate(catalog.members().stream());
+    }
+
+    @Benchmark
+    public long packIsbn(Cursor cursor) {
+        return ISBNValidator.pack(catalog.isbn(catalog.skewedBook(cursor.next++)));
+    }
+
+    @Benchmark
+    public Book findBookByIsbn(Cursor cursor) {
+        return books.findBookByIsbn(catalog.isbn(catalog.skewedBook(cursor.next++)));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Book findBookByIsbnAllCores(Cursor cursor) {
+        return books.findBookByIsbn(catalog.isbn(catalog.skewedBook(cursor.next++)));
+    }
+
+    @Benchmark
+    public List<Book> findBookByTitle(Cursor cursor) {
+        return books.findBookByTitle(catalog.titleWord(cursor.next++));
+    }
+
+    @Benchmark
+    public Member findMemberByEmail(Cursor cursor) {
+        return members.findMemberByEmail(catalog.email(cursor.next++ % memberCount));
+    }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock that only moves when a simulation sets it, shared by the simulations and benchmarks
+ * that drive the services through simulated time. Clocks derived with {@link #withZone(ZoneId)}
+ * read the same instant, so setting any of them moves all of them.
+ */
+public final class SimulatedClock extends Clock {
+
+    // Current time in whole seconds; shared with the clocks derived from this one
+    private final AtomicLong epochSecond;
+    private final ZoneId zone;
+
+    /**
+     * @param epochSecond Starting time; the clock's zone is UTC.
+     */
+    public SimulatedClock(long epochSecond) {
+        this(new AtomicLong(epochSecond), ZoneOffset.UTC);
+    }
+
+    private SimulatedClock(AtomicLong epochSecond, ZoneId zone) {
+        this.epochSecond = epochSecond;
+        this.zone = zone;
+    }
+
+    /**
+     * Moves the clock, and every clock derived from it, to the given time.
+     *
+     * @param epochSecond New time in seconds since the epoch.
+     */
+    public void set(long epochSecond) {
+        this.epochSecond.set(epochSecond);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new SimulatedClock(epochSecond, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochSecond(epochSecond.get());
+    }
+}
@@ -0,0 +1,107 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates realistic synthetic catalog and member records for benchmarks,
+ * plus a skewed (Zipf-like) access pattern where a few popular titles get most requests.
+ */
+public final class SyntheticCatalog {
+
+    private static final String[] WORDS = {
+            "river", "shadow", "garden", "silent", "empire", "winter", "glass", "storm", "ocean", "night",
+            "kingdom", "fire", "secret", "history", "journey", "machine", "letters", "island", "mountain", "city",
+            "light", "dream", "stone", "memory", "north", "hidden", "golden", "forest", "house", "war"
+    };
+    private static final String[] SURNAMES = {
+            "Smith", "Garcia", "Yilmaz", "Kaya", "Nguyen", "Muller", "Rossi", "Tanaka", "Silva", "Novak",
+            "Dubois", "Andersen", "Kowalski", "Haddad", "Okafor", "Ivanova", "Larsen", "Moreau", "Costa", "Sato"
+    };
+
+    // Number of precomputed samples; sampling inside timed loops is a single array read
+    private static final int SAMPLE_COUNT = 1 << 16;
+
+    private final List<String[]> books;
+    private final List<String[]> members;
+    private final int[] skewedSamples;
+
+    /**
+     * @param bookCount   Number of books to generate.
+     * @param memberCount Number of members to generate.
+     * @param seed        Random seed for reproducible runs.
+     */
+    public SyntheticCatalog(int bookCount, int memberCount, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        books = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            String title = word(random) + " " + word(random) + " " + word(random);
+            String author = Character.toUpperCase(WORDS[random.nextInt(WORDS.length)].charAt(0)) + ". "
+                    + SURNAMES[random.nextInt(SURNAMES.length)];
+            books.add(new String[]{title, author, hyphenate(isbn13(i))});
+        }
+
+        members = new ArrayList<>(memberCount);
+        for (int i = 0; i < memberCount; i++) {
+            members.add(new String[]{"Member" + i, SURNAMES[i % SURNAMES.length], "member" + i + "@example.com",
+                    "555" + (1_000_000 + i), i + " Library Street"});
+        }
+
+        // Inverse transform of a 1/x distribution: rank r is drawn with probability ~ 1/(r+1)
+        skewedSamples = new int[SAMPLE_COUNT];
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            skewedSamples[i] = (int) Math.min(bookCount - 1, Math.floor(Math.pow(bookCount + 1, random.nextDouble())) - 1);
+        }
+    }
+
+    public List<String[]> books() {
+        return books;
+    }
+
+    public List<String[]> members() {
+        return members;
+    }
+
+    /**
+     * Returns the book index for the i-th skewed access.
+     *
+     * @param i Access counter.
+     * @return Index into {@link #books()}, biased toward low indexes.
+     */
+    public int skewedBook(int i) {
+        return skewedSamples[i & (SAMPLE_COUNT - 1)];
+    }
+
+    public String isbn(int book) {
+        return books.get(book)[2];
+    }
+
+    public String email(int member) {
+        return members.get(member)[2];
+    }
+
+    public String titleWord(int i) {
+        return WORDS[i % WORDS.length];
+    }
+
+    private static String word(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    // Builds a valid ISBN-13 from a sequence number
+    private static String isbn13(long n) {
+        String body = "978" + String.format("%09d", n % 1_000_000_000L);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = body.charAt(i) - '0';
+            sum += (i % 2 == 0) ? digit : digit * 3;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    private static String hyphenate(String isbn) {
+        return isbn.substring(0, 3) + "-" + isbn.substring(3, 4) + "-" + isbn.substring(4, 7) + "-"
+                + isbn.substring(7, 12) + "-" + isbn.substring(12);
+    }
+}
@@ -1,23 +1,119 @@
+import analytics.CirculationAnalytics;
+import analytics.CirculationReport;
+import analytics.LoanHistory;
+import api.LibraryHttpServer;
+import events.ChangeStream;
+import events.FileChangeSink;
+import metrics.MetricsExporter;
+import metrics.MetricsRegistry;
 import model.Book;
+import model.Hold;
+import model.LedgerEntry;
+import model.Loan;
 import model.Member;
+import persistence.LibraryStore;
+import service.Autocomplete;
 import service.BookService;
+import service.BookSort;
+import service.CachingLibrary;
+import service.CatalogSegment;
+import service.ColumnarLibrary;
+import service.HoldResult;
+import service.ISBNValidator;
 import service.Library;
+import service.LoanResult;
 import service.LoanService;
+import service.MappedLibrary;
 import service.MemberService;
-
+import service.OverdueNoticeSink;
+import service.OverdueScheduler;
+import service.Page;
+import service.ShardedLibrary;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Main entry point for the Library Management System.
- * Handles user interaction through a text-based menu interface.
+ * Handles user interaction through a text-based menu interface and renders
+ * the results returned by the services to the console.
  */
 
 public class LibraryManagementSystem {
-    private static final Library myLibrary = new BookService();
-    private static final MemberService memberService = new MemberService();
-    private static final LoanService loanService = new LoanService();
+    // Counters and latency histograms shared by all services
+    private static final MetricsRegistry metrics = new MetricsRegistry();
+
+    // Directory for persisted state and notices; can be overridden with -Dlibrary.data.dir
+    private static final Path dataDir = Path.of(System.getProperty("library.data.dir", "data"));
+
+    // Catalog engine, chosen with -Dlibrary.catalog=columnar|mapped|sharded
+    private static final Library myLibrary = openCatalog(System.getProperty("library.catalog", "objects"));
+    private static final MemberService memberService = new MemberService(metrics);
+    private static final LoanService loanService = new LoanService(metrics);
+
+    // Number of records shown per page when listing books or members
+    private static final int PAGE_SIZE = 20;
+
+    // Snapshot + write-ahead log persistence
+    private static final LibraryStore store = new LibraryStore(
+            dataDir, myLibrary, memberService, loanService, 10_000, 64, 200);
+
+    // Daily overdue notices, appended to a file in the data directory; the last processed
+    // date is kept next to it so a restart does not notify the same loans again
+    private static final OverdueScheduler overdueScheduler = new OverdueScheduler(
+            loanService, OverdueNoticeSink.appendingTo(dataDir.resolve("overdue-notices.log")),
+            dataDir.resolve("overdue-processed"));
+
+    // Returned loans and the circulation reports computed over them
+    private static final LoanHistory loanHistory = new LoanHistory();
+    private static final CirculationAnalytics analytics = new CirculationAnalytics(loanHistory);
+
+    // Title and author suggestions, ranked by how often each book is borrowed
+    private static final Autocomplete autocomplete = new Autocomplete(myLibrary);
+
+    // Number of suggestions shown when a title search finds nothing
+    private static final int SUGGESTION_COUNT = 5;
+
+    // Number of titles and borrowers ranked in the circulation report
+    private static final int REPORT_TOP_N = 10;
+
+    // Catalog, member and loan mutations, appended to a file in the data directory as JSON lines
+    private static final Path changesPath = dataDir.resolve("changes.jsonl");
+    private static ChangeStream changes;
+    private static FileChangeSink changeSink;
+
+    // Metrics snapshot rewritten every minute in the data directory
+    private static final MetricsExporter metricsExporter = new MetricsExporter(metrics, dataDir.resolve("metrics.json"));
 
     public static void main(String[] args) {
+        try {
+            store.recover();
+            overdueScheduler.recover();
+            loanHistory.appendReturned(memberService.list());
+            indexForAutocomplete();
+            openChangeStream();
+            myLibrary.setEventListener(store.andThen(autocomplete).andThen(changes).andThen(loanService.copyHandOff()));
+            memberService.setEventListener(store.andThen(changes));
+            loanService.setEventListener(store.andThen(loanHistory).andThen(autocomplete).andThen(changes));
+        } catch (IOException e) {
+            System.out.println("Could not load saved library data: " + e.getMessage());
+            return;
+        }
+        overdueScheduler.start();
+        metricsExporter.start(60);
+
+        if (args.length > 0 && args[0].equals("--http")) {
+            serveHttp(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("Welcome to the Library Management System!");
@@ -29,20 +125,27 @@ public class LibraryManagementSystem {
 
             switch (choice) {
                 case 1 -> addBook(scanner);
-                case 2 -> displayBooks();
+                case 2 -> displayBooks(scanner);
                 case 3 -> searchBookByTitle(scanner);
                 case 4 -> searchBookByIsbn(scanner);
                 case 5 -> addMember(scanner);
-                case 6 -> displayMembers();
+                case 6 -> displayMembers(scanner);
                 case 7 -> searchMemberByEmail(scanner);
                 case 8 -> checkOutBook(scanner);
                 case 9 -> returnBook(scanner);
-                case 10 -> {
+                case 10 -> payDebt(scanner);
+                case 11 -> placeHold(scanner);
+                case 12 -> showCirculationReport();
+                case 13 -> {
                     System.out.println("Thank you for using the Library Management System!");
                     scanner.close();
+                    overdueScheduler.close();
+                    closeMetrics();
+                    closeChanges();
+                    closeStore();
                     return;
                 }
-                default -> System.out.println("Invalid selection. Please enter a number between 1 and 10.");
+                default -> System.out.println("Invalid selection. Please enter a number between 1 and 13.");
             }
         }
     }
@@ -61,10 +164,120 @@ public class LibraryManagementSystem {
                 "\n7. Search for a member by email" +
                 "\n8. Check out a book" +
                 "\n9. Return a book" +
-                "\n10. Exit" +
+                "\n10. Pay member debt" +
+                "\n11. Place a hold on a book" +
+                "\n12. Show circulation report" +
+                "\n13. Exit" +
                 "\nEnter your choice: ");
     }
 
+    /**
+     * Runs the HTTP API instead of the console menu. The server keeps the JVM alive;
+     * on shutdown (e.g. Ctrl+C) it stops accepting requests and the state is saved.
+     *
+     * @param port Port to listen on.
+     */
+    private static void serveHttp(int port) {
+        LibraryHttpServer server;
+        try {
+            server = new LibraryHttpServer(new InetSocketAddress(port), myLibrary, autocomplete,
+                    memberService, loanService);
+        } catch (IOException e) {
+            System.out.println("Could not start the HTTP server: " + e.getMessage());
+            overdueScheduler.close();
+            closeMetrics();
+            closeChanges();
+            closeStore();
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            overdueScheduler.close();
+            closeMetrics();
+            closeChanges();
+            closeStore();
+        }));
+        server.start();
+        System.out.println("Library Management System listening on port " + server.getPort());
+    }
+
+    /**
+     * Creates the catalog engine: "columnar" keeps books in compact primitive columns,
+     * "mapped" reads them from a memory-mapped segment file behind a lookup cache,
+     * "sharded" partitions them by ISBN over single-writer shards, anything else uses BookService.
+     */
+    private static Library openCatalog(String engine) {
+        if (engine.equals("columnar")) {
+            return new ColumnarLibrary();
+        }
+        if (engine.equals("sharded")) {
+            int shards = Integer.getInteger("library.shards", Runtime.getRuntime().availableProcessors());
+            return new ShardedLibrary(shards, metrics);
+        }
+        if (engine.equals("mapped")) {
+            // Recovery maps the segment the snapshot refers to
+            int cacheSize = Integer.getInteger("library.cacheSize", 10_000);
+            return CachingLibrary.withMaxEntries(new MappedLibrary(CatalogSegment.empty()), cacheSize, metrics);
+        }
+        return new BookService(metrics);
+    }
+
+    // Ranks the autocomplete suggestions by all recorded loans; the catalog is indexed at the first query
+    private static void indexForAutocomplete() {
+        for (Member member : memberService.list()) {
+            synchronized (member.getLoanList()) {
+                for (Loan loan : member.getLoanList()) {
+                    autocomplete.recordLoan(loan.getBook());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the change stream with a file sink, numbering events on from the last one in the file.
+     * The buffer size can be set with -Dlibrary.changeBuffer.
+     */
+    private static void openChangeStream() throws IOException {
+        int capacity = Integer.getInteger("library.changeBuffer", 4096);
+        changes = new ChangeStream(capacity, FileChangeSink.lastSequence(changesPath) + 1);
+        changeSink = new FileChangeSink(changesPath);
+        changes.subscribe("file", changeSink, 256);
+    }
+
+    // Delivers the buffered changes to the file and closes it
+    private static void closeChanges() {
+        changes.close();
+        try {
+            changeSink.close();
+        } catch (IOException e) {
+            System.out.println("Could not write change events: " + e.getMessage());
+        }
+    }
+
+    private static void closeMetrics() {
+        try {
+            metricsExporter.close();
+        } catch (IOException e) {
+            System.out.println("Could not write metrics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a final snapshot and closes the write-ahead log.
+     */
+    private static void closeStore() {
+        try {
+            store.close();
+            Library catalog = myLibrary instanceof CachingLibrary cached ? cached.getDelegate() : myLibrary;
+            if (catalog instanceof ShardedLibrary sharded) {
+                sharded.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not save library data: " + e.getMessage());
+        }
+    }
+
     private static void addBook(Scanner scanner) {
         System.out.print("Enter book title: ");
         String title = scanner.nextLine();
@@ -75,24 +288,52 @@ public class LibraryManagementSystem {
         System.out.print("Enter ISBN: ");
         String isbn = scanner.nextLine().toUpperCase();
 
+        System.out.print("Enter number of copies (default 1): ");
+        int copies = parseCopies(scanner.nextLine());
+
         // Validate ISBN format
         if (!ISBNValidator.isValidISBN(isbn)) {
             System.out.println("Invalid ISBN format!");
         }
+        // Validate number of copies
+        else if (copies < 1) {
+            System.out.println("Number of copies must be a positive number!");
+        }
         // Check for duplicate ISBN in the system
         else if (!myLibrary.addIsbn(isbn)) {
             System.out.println("This ISBN is already registered!");
         }
         // Add book if validations pass
         else {
-            myLibrary.create(title, author, isbn);
+            myLibrary.create(title, author, isbn, copies);
+            System.out.println("Book added successfully!");
         }
     }
 
-    private static void displayBooks() {
+    // Reads a copy count; blank input means one copy, anything unparsable is rejected as 0
+    private static int parseCopies(String input) {
+        if (input.isBlank()) return 1;
+        try {
+            return Integer.parseInt(input.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void displayBooks(Scanner scanner) {
         System.out.println("\n ******** All Books ********");
         System.out.println("-----------------------------");
-        myLibrary.list();
+        Page<Book> page = myLibrary.list(BookSort.TITLE, null, null, PAGE_SIZE);
+        if (page.items().isEmpty()) {
+            System.out.println("No books are currently available in the library.");
+            return;
+        }
+
+        printAll(page.items());
+        while (page.hasNext() && showMore(scanner)) {
+            page = myLibrary.list(BookSort.TITLE, null, page.nextCursor(), PAGE_SIZE);
+            printAll(page.items());
+        }
     }
 
     private static void searchBookByTitle(Scanner scanner) {
@@ -101,7 +342,17 @@ public class LibraryManagementSystem {
 
         System.out.println("\nFound Books: ");
         System.out.println("-----------------------------");
-        myLibrary.findBookByTitle(title);
+        List<Book> books = myLibrary.findBookByTitle(title);
+        if (books.isEmpty()) {
+            System.out.println("No books found containing the title: " + title);
+            List<Book> suggestions = autocomplete.suggest(title, SUGGESTION_COUNT);
+            if (!suggestions.isEmpty()) {
+                System.out.println("Did you mean:");
+                printAll(suggestions);
+            }
+        } else {
+            printAll(books);
+        }
     }
 
     private static void searchBookByIsbn(Scanner scanner) {
@@ -114,7 +365,8 @@ public class LibraryManagementSystem {
             System.out.println("\nFound Books: ");
             System.out.println("-----------------------------");
 
-            myLibrary.findBookByIsbn(isbn, true);
+            Book book = myLibrary.findBookByIsbn(isbn);
+            System.out.println(book != null ? book : "No book found with the ISBN: " + isbn);
         }
     }
 
@@ -134,14 +386,34 @@ public class LibraryManagementSystem {
         System.out.print("Enter address: ");
         String address = scanner.nextLine();
 
-        memberService.create(name, surname, email, mpNo, address);
-
+        Member member = memberService.create(name, surname, email, mpNo, address);
+        System.out.println(member != null ? "Member successfully added!" : "Email already registered!");
     }
 
-    private static void displayMembers() {
+    private static void displayMembers(Scanner scanner) {
         System.out.println("\n******** All Members ********");
         System.out.println("-----------------------------");
-        memberService.list();
+        Page<Member> page = memberService.list(null, PAGE_SIZE);
+        if (page.items().isEmpty()) {
+            System.out.println("No members found.");
+            return;
+        }
+
+        printAll(page.items());
+        while (page.hasNext() && showMore(scanner)) {
+            page = memberService.list(page.nextCursor(), PAGE_SIZE);
+            printAll(page.items());
+        }
+    }
+
+    /**
+     * Asks whether the next page of a listing should be shown.
+     *
+     * @return true unless the user typed q.
+     */
+    private static boolean showMore(Scanner scanner) {
+        System.out.print("Press Enter for the next page, or q to return to the menu: ");
+        return !scanner.nextLine().trim().equalsIgnoreCase("q");
     }
 
     private static void searchMemberByEmail(Scanner scanner) {
@@ -150,7 +422,8 @@ public class LibraryManagementSystem {
 
         System.out.println("\nFound Member: ");
         System.out.println("-----------------------------");
-        memberService.findMemberByEmail(email, true);
+        Member member = memberService.findMemberByEmail(email);
+        System.out.println(member != null ? member : "No members found with email: " + email);
     }
 
     private static void checkOutBook(Scanner scanner) {
@@ -163,9 +436,16 @@ public class LibraryManagementSystem {
         if (!ISBNValidator.isValidISBN(isbn)) {
             System.out.println("Invalid ISBN format!");
         } else {
-            Book foundBook = myLibrary.findBookByIsbn(isbn, false);
-            Member foundMember = memberService.findMemberByEmail(email, false);
-            loanService.checkOut(foundMember, foundBook);
+            Book foundBook = findBook(isbn);
+            Member foundMember = findMember(email);
+            LoanResult result = loanService.checkOut(foundMember, foundBook);
+
+            switch (result.outcome()) {
+                case CHECKED_OUT -> System.out.println("Book successfully checked out to user: " + foundMember.getEmail());
+                case INVALID_REQUEST -> System.out.println("Invalid member or book.");
+                case DUPLICATE_LOAN -> System.out.println("This member already has a copy of this book.");
+                default -> System.out.println("Book not found or already checked out. Use option 11 to place a hold.");
+            }
         }
     }
 
@@ -179,59 +459,122 @@ public class LibraryManagementSystem {
         if (!ISBNValidator.isValidISBN(isbn)) {
             System.out.println("Invalid ISBN format!");
         } else {
-            Book foundBook = myLibrary.findBookByIsbn(isbn, false);
-            Member foundMember = memberService.findMemberByEmail(email, false);
-            loanService.returnBook(foundBook, foundMember);
+            Book foundBook = findBook(isbn);
+            Member foundMember = findMember(email);
+            LoanResult result = loanService.returnBook(foundBook, foundMember);
+
+            switch (result.outcome()) {
+                case RETURNED -> {
+                    if (result.feeCents() > 0) {
+                        System.out.println("You are late by " + result.lateDays() + " days. Your debt is: "
+                                + LedgerEntry.formatCents(foundMember.getBalanceCents()));
+                    }
+                    System.out.println("Book returned successfully!");
+                }
+                case INVALID_REQUEST -> System.out.println("Invalid book or member information.");
+                case NO_ACTIVE_LOAN -> System.out.println("No active loan found for this book.");
+                default -> System.out.println("Book not found or is not checked out.");
+            }
         }
     }
 
-}
-
-/**
- * A utility class to validate ISBN-10 and ISBN-13 formats.
- */
-class ISBNValidator {
-    /**
-     * Validates the ISBN string, removing hyphens and spaces first.
-     * Supports ISBN-10 and ISBN-13 formats.
-     *
-     * @param isbn Raw ISBN string.
-     * @return true if valid, false otherwise.
-     */
-    public static boolean isValidISBN(String isbn) {
-        isbn = isbn.replace("-", "").replace(" ", "");
-        return isbn.length() == 10 ? isValidISBN10(isbn) : isbn.length() == 13 && isValidISBN13(isbn);
-    }
+    private static void payDebt(Scanner scanner) {
+        System.out.print("Enter the email of member: ");
+        String email = scanner.nextLine();
 
-    // Validates ISBN-10 format and checksum
-    private static boolean isValidISBN10(String isbn) {
-        if (!isbn.matches("\\d{9}[\\dXx]")) return false;
+        Member member = findMember(email);
+        if (member == null) {
+            return;
+        }
+        if (member.getBalanceCents() == 0) {
+            System.out.println("This member has no outstanding debt.");
+            return;
+        }
 
-        int sum = 0;
-        for (int i = 0; i < 9; i++) {
-            sum += (isbn.charAt(i) - '0') * (10 - i);
+        System.out.println("Outstanding debt: " + LedgerEntry.formatCents(member.getBalanceCents()));
+        System.out.print("Enter amount to pay: ");
+        try {
+            long amountCents = new BigDecimal(scanner.nextLine().trim()).movePointRight(2).longValueExact();
+            long remaining = memberService.recordPayment(member, amountCents);
+            System.out.println("Payment recorded. Remaining debt: " + LedgerEntry.formatCents(remaining));
+        } catch (ArithmeticException | NumberFormatException e) {
+            System.out.println("Invalid amount!");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
         }
+    }
 
-        char lastChar = isbn.charAt(9);
-        int lastValue = (lastChar == 'X' || lastChar == 'x') ? 10 : (lastChar - '0');
-        sum += lastValue;
+    private static void placeHold(Scanner scanner) {
+        System.out.print("Enter the email of member: ");
+        String email = scanner.nextLine();
+
+        System.out.print("Enter the ISBN of the book you want to reserve: ");
+        String isbn = scanner.nextLine().toUpperCase();
 
-        return sum % 11 == 0;
+        if (!ISBNValidator.isValidISBN(isbn)) {
+            System.out.println("Invalid ISBN format!");
+            return;
+        }
+        HoldResult result = loanService.placeHold(findMember(email), findBook(isbn));
+        switch (result.outcome()) {
+            case PLACED -> System.out.println(result.hold().getState() == Hold.State.READY
+                    ? "A copy has been set aside. Pick it up by " + result.hold().getPickupDeadline() + "."
+                    : "Hold placed. Position in queue: " + result.position());
+            case AVAILABLE -> System.out.println("A copy is available. Use option 8 to check it out.");
+            case ALREADY_HOLDING -> System.out.println("This member already has a hold on this book.");
+            case ALREADY_BORROWED -> System.out.println("This member already has a copy of this book.");
+            case QUEUE_FULL -> System.out.println("The hold queue for this book is full.");
+            default -> System.out.println("Invalid member or book.");
+        }
     }
 
-    // Validates ISBN-13 format and checksum
-    private static boolean isValidISBN13(String isbn) {
-        if (!isbn.matches("\\d{13}")) return false;
+    private static void showCirculationReport() {
+        CirculationReport report = analytics.refresh(REPORT_TOP_N);
+        System.out.println("Returned loans: " + report.loans());
+        System.out.printf("Average loan duration: %.1f days%n", report.averageLoanDays());
+        System.out.printf("Returned late: %.1f%%%n", report.overdueRate() * 100);
+        System.out.printf("Borrowers: %d (%.1f loans each on average)%n",
+                report.borrowers(), report.averageLoansPerBorrower());
+
+        System.out.println("Most borrowed titles:");
+        for (CirculationReport.Ranked<Book> title : report.topTitles()) {
+            System.out.println("  " + title.count() + "  " + title.item().getTitle() + " (" + title.item().getIsbn() + ")");
+        }
+        System.out.println("Most active borrowers:");
+        for (CirculationReport.Ranked<Member> borrower : report.topBorrowers()) {
+            System.out.println("  " + borrower.count() + "  " + borrower.item().getEmail());
+        }
+    }
 
-        int sum = 0;
-        for (int i = 0; i < 12; i++) {
-            int digit = isbn.charAt(i) - '0';
-            sum += (i % 2 == 0) ? digit : digit * 3;
+    // Looks up a book for a loan operation, reporting a miss
+    private static Book findBook(String isbn) {
+        Book book = myLibrary.findBookByIsbn(isbn);
+        if (book == null) {
+            System.out.println("No book found with the ISBN: " + isbn);
         }
+        return book;
+    }
 
-        int checkDigit = (10 - (sum % 10)) % 10;
-        int lastDigit = isbn.charAt(12) - '0';
+    // Looks up a member for a loan operation, reporting a miss
+    private static Member findMember(String email) {
+        Member member = memberService.findMemberByEmail(email);
+        if (member == null) {
+            System.out.println("No members found with email: " + email);
+        }
+        return member;
+    }
 
-        return checkDigit == lastDigit;
+    /**
+     * Prints every item through one buffered writer instead of a synchronized println per record.
+     *
+     * @param items Records to print.
+     */
+    private static void printAll(List<?> items) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        for (Object item : items) {
+            out.println(item);
+        }
+        out.flush();
     }
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,235 @@
+package analytics;
+
+import model.Member;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * Circulation reports over a {@link LoanHistory}: most borrowed titles, per-member borrowing
+ * frequency, average loan duration and overdue rate.
+ * <p>
+ * All aggregates are sums, so each refresh only folds in the loans appended since the previous
+ * one. The new range is split at partition boundaries into fork-join tasks; each task condenses
+ * its slice into sorted (id, count) runs, and the runs are merged pairwise up the task tree.
+ * Reports only read the history's published columns and never take the lock used by returns,
+ * so check-outs and returns are not blocked while a report runs.
+ */
+public class CirculationAnalytics {
+
+    private final LoanHistory history;
+    private final ForkJoinPool pool;
+
+    // Running totals over the loans below the watermark; guarded by this
+    private long watermark;
+    private long[] borrowsByBook = new long[0];
+    private long[] borrowsByMember = new long[0];
+    private long totalLoanDays;
+    private long lateLoans;
+
+    public CirculationAnalytics(LoanHistory history) {
+        this(history, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param history Returned loans to report on.
+     * @param pool    Pool running the aggregation tasks.
+     */
+    public CirculationAnalytics(LoanHistory history, ForkJoinPool pool) {
+        this.history = history;
+        this.pool = pool;
+    }
+
+    /**
+     * Folds in the loans recorded since the last refresh and builds a report.
+     *
+     * @param topN Number of titles and borrowers to rank.
+     * @return The report over all recorded loans.
+     * @throws IllegalArgumentException If topN is negative.
+     */
+    public synchronized CirculationReport refresh(int topN) {
+        if (topN < 0) {
+            throw new IllegalArgumentException("Top-N must not be negative: " + topN);
+        }
+        long end = history.size();
+        if (end > watermark) {
+            Counts delta = pool.invoke(new Aggregate(history.partitions(), watermark, end));
+            borrowsByBook = add(borrowsByBook, delta.bookIds, delta.bookCounts);
+            borrowsByMember = add(borrowsByMember, delta.memberIds, delta.memberCounts);
+            totalLoanDays += delta.loanDays;
+            lateLoans += delta.late;
+            watermark = end;
+        }
+
+        int borrowers = 0;
+        for (long count : borrowsByMember) {
+            if (count > 0) borrowers++;
+        }
+        return new CirculationReport(watermark,
+                top(borrowsByBook, topN, history::book),
+                top(borrowsByMember, topN, history::member),
+                borrowers,
+                watermark == 0 ? 0 : (double) totalLoanDays / watermark,
+                watermark == 0 ? 0 : (double) lateLoans / watermark);
+    }
+
+    /**
+     * Returns how many returned loans a member had as of the last refresh.
+     *
+     * @param member The member to look up.
+     * @return Number of loans; 0 if the member has none.
+     */
+    public synchronized long borrowCount(Member member) {
+        Integer id = history.memberId(member);
+        return id == null || id >= borrowsByMember.length ? 0 : borrowsByMember[id];
+    }
+
+    // Adds sparse counts into a dense array, growing it to cover new ids
+    private static long[] add(long[] dense, int[] ids, long[] counts) {
+        if (ids.length > 0 && ids[ids.length - 1] >= dense.length) {
+            dense = Arrays.copyOf(dense, ids[ids.length - 1] + 1);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            dense[ids[i]] += counts[i];
+        }
+        return dense;
+    }
+
+    // Highest counts first; ties go to the lower id, i.e. the item seen first
+    private static <T> List<CirculationReport.Ranked<T>> top(long[] counts, int n, IntFunction<T> resolve) {
+        PriorityQueue<Integer> smallest = new PriorityQueue<>(Math.max(1, n),
+                Comparator.<Integer>comparingLong(id -> counts[id]).thenComparing(Comparator.reverseOrder()));
+        for (int id = 0; id < counts.length && n > 0; id++) {
+            if (counts[id] == 0) continue;
+            if (smallest.size() < n) {
+                smallest.add(id);
+            } else if (counts[id] > counts[smallest.peek()]) {
+                smallest.poll();
+                smallest.add(id);
+            }
+        }
+        List<CirculationReport.Ranked<T>> ranked = new ArrayList<>(smallest.size());
+        while (!smallest.isEmpty()) {
+            int id = smallest.poll();
+            ranked.add(new CirculationReport.Ranked<>(resolve.apply(id), counts[id]));
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * Sparse per-book and per-member loan counts plus duration and lateness sums for a range of loans.
+     * Ids are strictly increasing.
+     */
+    private record Counts(int[] bookIds, long[] bookCounts, int[] memberIds, long[] memberCounts,
+                          long loanDays, long late) {
+
+        Counts merge(Counts other) {
+            int[] books = new int[bookIds.length + other.bookIds.length];
+            long[] bookTotals = new long[books.length];
+            int bookRuns = mergeRuns(bookIds, bookCounts, other.bookIds, other.bookCounts, books, bookTotals);
+            int[] members = new int[memberIds.length + other.memberIds.length];
+            long[] memberTotals = new long[members.length];
+            int memberRuns = mergeRuns(memberIds, memberCounts, other.memberIds, other.memberCounts, members, memberTotals);
+            return new Counts(Arrays.copyOf(books, bookRuns), Arrays.copyOf(bookTotals, bookRuns),
+                    Arrays.copyOf(members, memberRuns), Arrays.copyOf(memberTotals, memberRuns),
+                    loanDays + other.loanDays, late + other.late);
+        }
+
+        // Merges two sorted runs into ids and counts, adding the counts of equal ids; returns the merged length
+        private static int mergeRuns(int[] ids1, long[] counts1, int[] ids2, long[] counts2, int[] ids, long[] counts) {
+            int i = 0, j = 0, k = 0;
+            while (i < ids1.length || j < ids2.length) {
+                if (j == ids2.length || i < ids1.length && ids1[i] < ids2[j]) {
+                    ids[k] = ids1[i];
+                    counts[k++] = counts1[i++];
+                } else if (i == ids1.length || ids2[j] < ids1[i]) {
+                    ids[k] = ids2[j];
+                    counts[k++] = counts2[j++];
+                } else {
+                    ids[k] = ids1[i];
+                    counts[k++] = counts1[i++] + counts2[j++];
+                }
+            }
+            return k;
+        }
+    }
+
+    /**
+     * Aggregates the loans in [from, to), splitting at partition boundaries until each task
+     * covers at most one partition.
+     */
+    private static final class Aggregate extends RecursiveTask<Counts> {
+        // ForkJoinTask is Serializable, but aggregates never leave the pool that runs them
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient LoanHistory.Partition[] partitions;
+        private final long from;
+        private final long to;
+
+        Aggregate(LoanHistory.Partition[] partitions, long from, long to) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counts compute() {
+            long firstPartition = from >>> LoanHistory.PARTITION_BITS;
+            long lastPartition = (to - 1) >>> LoanHistory.PARTITION_BITS;
+            if (firstPartition == lastPartition) {
+                return leaf(partitions[(int) firstPartition],
+                        (int) (from & (LoanHistory.PARTITION_SIZE - 1)),
+                        (int) ((to - 1) & (LoanHistory.PARTITION_SIZE - 1)) + 1);
+            }
+            long split = ((firstPartition + lastPartition + 1) >>> 1) << LoanHistory.PARTITION_BITS;
+            Aggregate left = new Aggregate(partitions, from, split);
+            left.fork();
+            Counts right = new Aggregate(partitions, split, to).compute();
+            return left.join().merge(right);
+        }
+
+        private static Counts leaf(LoanHistory.Partition partition, int from, int to) {
+            long loanDays = 0;
+            long late = 0;
+            for (int i = from; i < to; i++) {
+                loanDays += partition.returnDays[i] - partition.loanDays[i];
+                if (partition.returnDays[i] > partition.dueDays[i]) late++;
+            }
+            int[] books = Arrays.copyOfRange(partition.books, from, to);
+            int[] members = Arrays.copyOfRange(partition.members, from, to);
+            Arrays.sort(books);
+            Arrays.sort(members);
+            int bookRuns = countRuns(books);
+            int memberRuns = countRuns(members);
+            long[] bookCounts = new long[bookRuns];
+            long[] memberCounts = new long[memberRuns];
+            return new Counts(Arrays.copyOf(books, collapse(books, bookCounts)), bookCounts,
+                    Arrays.copyOf(members, collapse(members, memberCounts)), memberCounts, loanDays, late);
+        }
+
+        private static int countRuns(int[] sorted) {
+            int runs = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) runs++;
+            }
+            return runs;
+        }
+
+        // Collapses equal ids at the front of the array and writes their counts; returns the number of runs
+        private static int collapse(int[] sorted, long[] counts) {
+            int runs = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[runs++] = sorted[i];
+                }
+                counts[runs - 1]++;
+            }
+            return runs;
+        }
+    }
+}
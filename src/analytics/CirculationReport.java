@@ -0,0 +1,36 @@
+package analytics;
+
+import model.Book;
+import model.Member;
+
+import java.util.List;
+
+/**
+ * Aggregates over all returned loans recorded up to the time of the report.
+ *
+ * @param loans              Number of returned loans.
+ * @param topTitles          Most borrowed books, most borrowed first.
+ * @param topBorrowers       Members with the most loans, most loans first.
+ * @param borrowers          Number of distinct members with at least one returned loan.
+ * @param averageLoanDays    Mean days between check-out and return; 0 if there are no loans.
+ * @param overdueRate        Share of loans returned after their due date, from 0 to 1.
+ */
+public record CirculationReport(long loans, List<Ranked<Book>> topTitles, List<Ranked<Member>> topBorrowers,
+                                int borrowers, double averageLoanDays, double overdueRate) {
+
+    /**
+     * An item and how many times it was borrowed.
+     *
+     * @param item  The book or member.
+     * @param count Number of loans.
+     */
+    public record Ranked<T>(T item, long count) {
+    }
+
+    /**
+     * @return Mean number of loans per distinct borrower; 0 if there are none.
+     */
+    public double averageLoansPerBorrower() {
+        return borrowers == 0 ? 0 : (double) loans / borrowers;
+    }
+}
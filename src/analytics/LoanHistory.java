@@ -0,0 +1,157 @@
+package analytics;
+
+import model.Book;
+import model.Loan;
+import model.Member;
+import service.LibraryEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Append-only store of returned loans, kept as primitive columns in fixed-size partitions.
+ * A loan is one book id, one member id and three epoch days, about 20 bytes, so hundreds of
+ * millions of historical loans fit on the heap. Records are appended under a short lock when a
+ * return is reported; readers take no lock and see every record below {@link #size()}, which is
+ * published after the record is written. Full partitions never change again.
+ */
+public class LoanHistory implements LibraryEventListener {
+
+    /**
+     * Number of loans per partition; a power of two so record indexes split with shifts.
+     */
+    static final int PARTITION_BITS = 16;
+    static final int PARTITION_SIZE = 1 << PARTITION_BITS;
+
+    /**
+     * One partition of loan columns.
+     */
+    static final class Partition {
+        final int[] books = new int[PARTITION_SIZE];
+        final int[] members = new int[PARTITION_SIZE];
+        final int[] loanDays = new int[PARTITION_SIZE];
+        final int[] dueDays = new int[PARTITION_SIZE];
+        final int[] returnDays = new int[PARTITION_SIZE];
+    }
+
+    // Partitions in append order; the array is replaced when a partition is added
+    private volatile Partition[] partitions = new Partition[0];
+
+    // Number of appended loans; written after the loan's columns
+    private volatile long size;
+
+    // Dense ids for books and members, so the columns hold ints instead of references
+    private final Map<Book, Integer> bookIds = new HashMap<>();
+    private final List<Book> books = new ArrayList<>();
+    private final Map<Member, Integer> memberIds = new HashMap<>();
+    private final List<Member> members = new ArrayList<>();
+
+    /**
+     * Records each returned loan.
+     */
+    @Override
+    public void bookReturned(Loan loan, long feeCents) {
+        append(loan);
+    }
+
+    /**
+     * Appends the returned loans of the given members, e.g. after the services were recovered.
+     * Loans that are still open are skipped; they are recorded when they are returned.
+     *
+     * @param members Members whose loan lists are read.
+     * @return Number of loans appended.
+     */
+    public long appendReturned(Collection<Member> members) {
+        long appended = 0;
+        for (Member member : members) {
+            List<Loan> loans = member.getLoanList();
+            synchronized (loans) {
+                for (Loan loan : loans) {
+                    if (loan.getReturnDate() != null) {
+                        append(loan);
+                        appended++;
+                    }
+                }
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Appends one returned loan.
+     *
+     * @param loan A loan with its return date set.
+     * @throws IllegalArgumentException If the loan has not been returned.
+     */
+    public synchronized void append(Loan loan) {
+        LocalDate returned = loan.getReturnDate();
+        if (returned == null) {
+            throw new IllegalArgumentException("Loan has not been returned");
+        }
+        long index = size;
+        int offset = (int) (index & (PARTITION_SIZE - 1));
+        Partition[] current = partitions;
+        if (offset == 0) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Partition();
+            partitions = current;
+        }
+        Partition partition = current[current.length - 1];
+        partition.books[offset] = id(loan.getBook(), bookIds, books);
+        partition.members[offset] = id(loan.getMember(), memberIds, members);
+        partition.loanDays[offset] = (int) loan.getLoanDate().toEpochDay();
+        partition.dueDays[offset] = (int) loan.getDueDate().toEpochDay();
+        partition.returnDays[offset] = (int) returned.toEpochDay();
+        size = index + 1;
+    }
+
+    /**
+     * @return Number of loans recorded so far.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return Number of distinct books seen so far; book ids are below this.
+     */
+    public synchronized int bookCount() {
+        return books.size();
+    }
+
+    /**
+     * @return Number of distinct members seen so far; member ids are below this.
+     */
+    public synchronized int memberCount() {
+        return members.size();
+    }
+
+    synchronized Book book(int id) {
+        return books.get(id);
+    }
+
+    synchronized Member member(int id) {
+        return members.get(id);
+    }
+
+    synchronized Integer memberId(Member member) {
+        return memberIds.get(member);
+    }
+
+    /**
+     * @return Partitions holding at least the first {@code size} loans; read {@link #size()} first.
+     */
+    Partition[] partitions() {
+        return partitions;
+    }
+
+    private static <T> int id(T item, Map<T, Integer> ids, List<T> byId) {
+        Integer id = ids.get(item);
+        if (id == null) {
+            id = byId.size();
+            ids.put(item, id);
+            byId.add(item);
+        }
+        return id;
+    }
+}
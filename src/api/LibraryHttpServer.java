@@ -0,0 +1,349 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import model.Book;
+import model.LedgerEntry;
+import model.Loan;
+import model.Member;
+import service.Autocomplete;
+import service.HoldResult;
+import service.ISBNValidator;
+import service.Library;
+import service.LoanResult;
+import service.LoanService;
+import service.MemberService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP/JSON front end for the library services.
+ * Exposes the same operations as the console menu so many desks and kiosks can
+ * work against one node at once:
+ * <pre>
+ * POST /books    {"title", "author", "isbn", "copies"}    add a book
+ * GET  /books    ?q=keywords or ?isbn=...                 search books
+ * GET  /books/suggest ?q=prefix[&limit=n]                autocomplete, typo-tolerant
+ * POST /members  {"name", "surname", "email", "mobilePhone", "address"}
+ * GET  /members  ?email=...                               find a member
+ * POST /loans    {"email", "isbn"}                        check out
+ * POST /returns  {"email", "isbn"}                        return
+ * POST /holds    {"email", "isbn"}                        place a hold
+ * </pre>
+ * Each request runs on its own virtual thread. The services handle concurrent calls:
+ * lookups read concurrent maps or take read locks, and mutations are serialized per
+ * service or per copy counter.
+ */
+public class LibraryHttpServer implements Closeable {
+
+    // Largest accepted request body; the API only takes a handful of short fields
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+
+    private final Library library;
+    private final Autocomplete autocomplete;
+    private final MemberService memberService;
+    private final LoanService loanService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * @param address       Address and port to listen on; port 0 picks a free port.
+     * @param library       Book service.
+     * @param autocomplete  Title and author suggestions.
+     * @param memberService Member service.
+     * @param loanService   Loan service.
+     * @throws IOException If the address cannot be bound.
+     */
+    public LibraryHttpServer(InetSocketAddress address, Library library, Autocomplete autocomplete,
+                             MemberService memberService, LoanService loanService) throws IOException {
+        this.library = library;
+        this.autocomplete = autocomplete;
+        this.memberService = memberService;
+        this.loanService = loanService;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        server.createContext("/books", route(Map.of("GET", this::searchBooks, "POST", this::addBook)));
+        server.createContext("/books/suggest", route(Map.of("GET", this::suggestBooks)));
+        server.createContext("/members", route(Map.of("GET", this::findMember, "POST", this::addMember)));
+        server.createContext("/loans", route(Map.of("POST", this::checkOut)));
+        server.createContext("/returns", route(Map.of("POST", this::returnBook)));
+        server.createContext("/holds", route(Map.of("POST", this::placeHold)));
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, gives in-flight requests a second to finish, then stops the workers.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Response addBook(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        String title = required(body, "title");
+        String author = required(body, "author");
+        String isbn = required(body, "isbn").toUpperCase();
+        int copies = body.get("copies") == null ? 1 : parseInt(body.get("copies"), "copies");
+
+        if (!ISBNValidator.isValidISBN(isbn)) {
+            return Response.error(400, "Invalid ISBN format");
+        }
+        if (copies < 1) {
+            return Response.error(400, "Number of copies must be a positive number");
+        }
+        if (!library.addIsbn(isbn)) {
+            return Response.error(409, "This ISBN is already registered");
+        }
+        return new Response(201, toJson(library.create(title, author, isbn, copies)));
+    }
+
+    private Response searchBooks(HttpExchange exchange) {
+        Map<String, String> query = readQuery(exchange);
+        String isbn = query.get("isbn");
+        if (isbn != null) {
+            if (!ISBNValidator.isValidISBN(isbn)) {
+                return Response.error(400, "Invalid ISBN format");
+            }
+            Book book = library.findBookByIsbn(isbn);
+            return book != null ? new Response(200, toJson(book)) : Response.error(404, "No book found with this ISBN");
+        }
+
+        String keywords = query.get("q");
+        if (keywords == null || keywords.isBlank()) {
+            return Response.error(400, "Expected a q or isbn query parameter");
+        }
+        return new Response(200, toJson(library.findBookByTitle(keywords)));
+    }
+
+    private Response suggestBooks(HttpExchange exchange) {
+        Map<String, String> query = readQuery(exchange);
+        String prefix = query.get("q");
+        if (prefix == null || prefix.isBlank()) {
+            return Response.error(400, "Expected a q query parameter");
+        }
+        int limit = query.get("limit") == null ? Autocomplete.MAX_SUGGESTIONS : parseInt(query.get("limit"), "limit");
+        return new Response(200, toJson(autocomplete.suggest(prefix, limit)));
+    }
+
+    private Response addMember(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        Member member = memberService.create(required(body, "name"), required(body, "surname"),
+                required(body, "email"), body.getOrDefault("mobilePhone", ""), body.getOrDefault("address", ""));
+        return member != null ? new Response(201, toJson(member)) : Response.error(409, "Email already registered");
+    }
+
+    private Response findMember(HttpExchange exchange) {
+        String email = readQuery(exchange).get("email");
+        if (email == null) {
+            return Response.error(400, "Expected an email query parameter");
+        }
+        Member member = memberService.findMemberByEmail(email);
+        return member != null ? new Response(200, toJson(member)) : Response.error(404, "No member found with this email");
+    }
+
+    private Response checkOut(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        String isbn = required(body, "isbn");
+        if (!ISBNValidator.isValidISBN(isbn)) {
+            return Response.error(400, "Invalid ISBN format");
+        }
+        LoanResult result = loanService.checkOut(memberService.findMemberByEmail(required(body, "email")),
+                library.findBookByIsbn(isbn));
+
+        return switch (result.outcome()) {
+            case CHECKED_OUT -> new Response(201, toJson(result));
+            case INVALID_REQUEST -> Response.error(404, "Member or book not found");
+            case DUPLICATE_LOAN -> Response.error(409, "This member already has a copy of this book");
+            default -> Response.error(409, "All copies of this book are checked out");
+        };
+    }
+
+    private Response returnBook(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        String isbn = required(body, "isbn");
+        if (!ISBNValidator.isValidISBN(isbn)) {
+            return Response.error(400, "Invalid ISBN format");
+        }
+        LoanResult result = loanService.returnBook(library.findBookByIsbn(isbn),
+                memberService.findMemberByEmail(required(body, "email")));
+
+        return switch (result.outcome()) {
+            case RETURNED -> new Response(200, toJson(result));
+            case INVALID_REQUEST -> Response.error(404, "Member or book not found");
+            case NO_ACTIVE_LOAN -> Response.error(409, "No active loan found for this book");
+            default -> Response.error(409, "This book is not checked out");
+        };
+    }
+
+    private Response placeHold(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        String isbn = required(body, "isbn");
+        if (!ISBNValidator.isValidISBN(isbn)) {
+            return Response.error(400, "Invalid ISBN format");
+        }
+        HoldResult result = loanService.placeHold(memberService.findMemberByEmail(required(body, "email")),
+                library.findBookByIsbn(isbn));
+
+        return switch (result.outcome()) {
+            case PLACED -> new Response(201, "{\"state\":" + Json.quote(result.hold().getState().name())
+                    + ",\"position\":" + result.position()
+                    + ",\"pickupDeadline\":" + Json.quote(result.hold().getPickupDeadline() == null
+                    ? null : result.hold().getPickupDeadline().toString()) + "}");
+            case INVALID_REQUEST -> Response.error(404, "Member or book not found");
+            case AVAILABLE -> Response.error(409, "A copy is available; check it out instead");
+            case ALREADY_HOLDING -> Response.error(409, "This member already has a hold on this book");
+            case ALREADY_BORROWED -> Response.error(409, "This member already has a copy of this book");
+            case QUEUE_FULL -> Response.error(503, "The hold queue for this book is full");
+        };
+    }
+
+    private static String toJson(Book book) {
+        return "{\"title\":" + Json.quote(book.getTitle())
+                + ",\"author\":" + Json.quote(book.getAuthor())
+                + ",\"isbn\":" + Json.quote(book.getIsbn())
+                + ",\"status\":" + Json.quote(book.getStatus().name())
+                + ",\"copies\":" + book.getCopies()
+                + ",\"availableCopies\":" + book.getAvailableCopies() + "}";
+    }
+
+    private static String toJson(List<Book> books) {
+        StringBuilder json = new StringBuilder("{\"books\":[");
+        for (int i = 0; i < books.size(); i++) {
+            json.append(i == 0 ? "" : ",").append(toJson(books.get(i)));
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String toJson(Member member) {
+        return "{\"name\":" + Json.quote(member.getName())
+                + ",\"surname\":" + Json.quote(member.getSurname())
+                + ",\"email\":" + Json.quote(member.getEmail())
+                + ",\"mobilePhone\":" + Json.quote(member.getMobilePhone())
+                + ",\"address\":" + Json.quote(member.getAddress())
+                + ",\"balance\":" + Json.quote(LedgerEntry.formatCents(member.getBalanceCents())) + "}";
+    }
+
+    private static String toJson(LoanResult result) {
+        Loan loan = result.loan();
+        return "{\"outcome\":" + Json.quote(result.outcome().name())
+                + ",\"email\":" + Json.quote(loan.getMember().getEmail())
+                + ",\"isbn\":" + Json.quote(loan.getBook().getIsbn())
+                + ",\"loanDate\":" + Json.quote(loan.getLoanDate().toString())
+                + ",\"dueDate\":" + Json.quote(loan.getDueDate().toString())
+                + ",\"returnDate\":" + Json.quote(loan.getReturnDate() == null ? null : loan.getReturnDate().toString())
+                + ",\"lateDays\":" + result.lateDays()
+                + ",\"fee\":" + Json.quote(LedgerEntry.formatCents(result.feeCents())) + "}";
+    }
+
+    // Dispatches by HTTP method and turns validation failures and unreadable bodies into 400 responses
+    private static HttpHandler route(Map<String, Endpoint> endpoints) {
+        return exchange -> {
+            Response response;
+            try {
+                Endpoint endpoint = endpoints.get(exchange.getRequestMethod());
+                response = endpoint != null ? endpoint.handle(exchange) : Response.error(405, "Method not allowed");
+            } catch (IllegalArgumentException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (IOException e) {
+                response = Response.error(400, "Could not read the request body");
+            } catch (RuntimeException e) {
+                response = Response.error(500, "Internal error");
+            }
+            send(exchange, response);
+        };
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] bytes = response.json().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body too large");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> readQuery(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return query;
+        for (String pair : raw.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing field: " + field);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, String field) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field " + field + " must be a whole number");
+        }
+    }
+
+    private interface Endpoint {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private record Response(int status, String json) {
+        static Response error(int status, String message) {
+            return new Response(status, "{\"error\":" + Json.quote(message) + "}");
+        }
+    }
+}
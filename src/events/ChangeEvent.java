@@ -0,0 +1,78 @@
+package events;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One mutation published on a {@link ChangeStream}.
+ *
+ * @param sequence  Position in the stream; consecutive and increasing.
+ * @param type      Kind of mutation.
+ * @param timestamp When the mutation was published.
+ * @param data      Fields of the mutation in a fixed order; the keys depend on the type.
+ */
+public record ChangeEvent(long sequence, Type type, Instant timestamp, Map<String, String> data) {
+
+    /**
+     * Kinds of mutations and the data fields each carries.
+     */
+    public enum Type {
+        // isbn, title, author, copies
+        BOOK_CREATED,
+        // isbn, copies (added)
+        COPIES_ADDED,
+        // email, name, surname
+        MEMBER_CREATED,
+        // email, isbn, loanDate, dueDate
+        BOOK_CHECKED_OUT,
+        // email, isbn, returnDate, feeCents
+        BOOK_RETURNED,
+        // email, isbn, pickupDeadline
+        HOLD_READY,
+        // email, amountCents, date
+        PAYMENT_RECORDED
+    }
+
+    /**
+     * @return The event as a single-line JSON object.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(128)
+                .append("{\"sequence\":").append(sequence)
+                .append(",\"type\":\"").append(type.name())
+                .append("\",\"timestamp\":\"").append(timestamp).append('"');
+        for (Map.Entry<String, String> field : data.entrySet()) {
+            json.append(',');
+            appendQuoted(json, field.getKey());
+            json.append(':');
+            appendQuoted(json, field.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendQuoted(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
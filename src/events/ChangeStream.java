@@ -0,0 +1,260 @@
+package events;
+
+import model.Book;
+import model.Hold;
+import model.LedgerEntry;
+import model.Loan;
+import model.Member;
+import service.LibraryEventListener;
+
+import java.io.Closeable;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ordered, sequence-numbered stream of catalog, member and loan mutations.
+ * Attach it to the services as a {@link LibraryEventListener}; each mutation becomes one
+ * {@link ChangeEvent} in a bounded ring buffer. Every subscriber has its own thread and read
+ * position and receives the events in order, in batches of everything published since its last
+ * batch (up to its batch limit). When the slowest subscriber is a full buffer behind, publishing
+ * waits for it, so memory stays bounded and no event is dropped. The services notify their
+ * listeners outside their own locks and compute calls, so a publisher waiting here holds up
+ * only its own request and snapshots, never other lookups or mutations.
+ * <p>
+ * A subscriber that throws has the failure reported on standard error and continues with the
+ * next batch; one broken consumer cannot stall the services.
+ */
+public class ChangeStream implements LibraryEventListener, Closeable {
+
+    private final ChangeEvent[] ring;
+    private final int mask;
+
+    // Guards the ring, the sequence and the subscription positions
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final Condition consumed = lock.newCondition();
+
+    // Sequence number the next event gets
+    private long nextSequence;
+    private boolean closed;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * A subscriber, its thread and the next sequence it will read.
+     */
+    private final class Subscription implements Runnable {
+        final String name;
+        final ChangeSubscriber subscriber;
+        final int maxBatch;
+        final Thread thread;
+        long next;
+
+        Subscription(String name, ChangeSubscriber subscriber, int maxBatch, long next) {
+            this.name = name;
+            this.subscriber = subscriber;
+            this.maxBatch = maxBatch;
+            this.next = next;
+            this.thread = new Thread(this, "change-stream-" + name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<ChangeEvent> batch;
+            while ((batch = take(this)) != null) {
+                try {
+                    subscriber.onEvents(batch);
+                } catch (Exception e) {
+                    System.err.println("Change subscriber " + name + " failed on events "
+                            + batch.get(0).sequence() + ".." + batch.get(batch.size() - 1).sequence() + ": " + e);
+                }
+                release(this, batch.size());
+            }
+        }
+    }
+
+    /**
+     * @param capacity      Number of events the buffer holds; rounded up to a power of two.
+     * @param firstSequence Sequence number of the first event, e.g. one past the last event a sink has stored.
+     * @throws IllegalArgumentException If the capacity is not positive.
+     */
+    public ChangeStream(int capacity, long firstSequence) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new ChangeEvent[size];
+        this.mask = size - 1;
+        this.nextSequence = firstSequence;
+    }
+
+    /**
+     * Starts delivering events published from now on to a subscriber.
+     *
+     * @param name       Name used for the subscriber's thread and in error reports.
+     * @param subscriber Receives the events.
+     * @param maxBatch   Most events handed over in one call.
+     * @throws IllegalStateException If the stream is closed.
+     */
+    public void subscribe(String name, ChangeSubscriber subscriber, int maxBatch) {
+        Subscription subscription;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Change stream is closed");
+            }
+            subscription = new Subscription(name, subscriber, Math.max(1, maxBatch), nextSequence);
+            subscriptions.add(subscription);
+        } finally {
+            lock.unlock();
+        }
+        subscription.thread.start();
+    }
+
+    /**
+     * @return Sequence number of the last published event, or one less than the first sequence if none.
+     */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return nextSequence - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bookCreated(Book book) {
+        publish(ChangeEvent.Type.BOOK_CREATED, "isbn", book.getIsbn(), "title", book.getTitle(),
+                "author", book.getAuthor(), "copies", Integer.toString(book.getCopies()));
+    }
+
+    @Override
+    public void copiesAdded(Book book, int copies) {
+        publish(ChangeEvent.Type.COPIES_ADDED, "isbn", book.getIsbn(), "copies", Integer.toString(copies));
+    }
+
+    @Override
+    public void memberCreated(Member member) {
+        publish(ChangeEvent.Type.MEMBER_CREATED, "email", member.getEmail(), "name", member.getName(),
+                "surname", member.getSurname());
+    }
+
+    @Override
+    public void bookCheckedOut(Loan loan) {
+        publish(ChangeEvent.Type.BOOK_CHECKED_OUT, "email", loan.getMember().getEmail(), "isbn", loan.getBook().getIsbn(),
+                "loanDate", loan.getLoanDate().toString(), "dueDate", loan.getDueDate().toString());
+    }
+
+    @Override
+    public void bookReturned(Loan loan, long feeCents) {
+        publish(ChangeEvent.Type.BOOK_RETURNED, "email", loan.getMember().getEmail(), "isbn", loan.getBook().getIsbn(),
+                "returnDate", loan.getReturnDate().toString(), "feeCents", Long.toString(feeCents));
+    }
+
+    @Override
+    public void holdReady(Hold hold) {
+        publish(ChangeEvent.Type.HOLD_READY, "email", hold.getMember().getEmail(), "isbn", hold.getBook().getIsbn(),
+                "pickupDeadline", hold.getPickupDeadline().toString());
+    }
+
+    @Override
+    public void paymentRecorded(Member member, LedgerEntry payment) {
+        publish(ChangeEvent.Type.PAYMENT_RECORDED, "email", member.getEmail(),
+                "amountCents", Long.toString(payment.amountCents()), "date", payment.date().toString());
+    }
+
+    /**
+     * Stops accepting events, lets every subscriber finish the events already published and
+     * waits up to five seconds for them.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            published.signalAll();
+            consumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            for (Subscription subscription : subscriptions) {
+                subscription.thread.join(5_000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Appends an event, waiting while the slowest subscriber is a full buffer behind.
+    // Events published after close are dropped.
+    private void publish(ChangeEvent.Type type, String... fields) {
+        Map<String, String> data = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i += 2) {
+            data.put(fields[i], fields[i + 1]);
+        }
+        Map<String, String> readOnly = Collections.unmodifiableMap(data);
+
+        lock.lock();
+        try {
+            while (!closed && nextSequence - slowestPosition() >= ring.length) {
+                consumed.awaitUninterruptibly();
+            }
+            if (closed) {
+                return;
+            }
+            // Stamped under the lock, so timestamps never run backwards against sequence numbers
+            ring[(int) (nextSequence & mask)] = new ChangeEvent(nextSequence, type, Instant.now(), readOnly);
+            nextSequence++;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Next sequence of the subscriber furthest behind; called with the lock held
+    private long slowestPosition() {
+        long slowest = nextSequence;
+        for (Subscription subscription : subscriptions) {
+            slowest = Math.min(slowest, subscription.next);
+        }
+        return slowest;
+    }
+
+    // Waits for events after the subscriber's position; returns null once closed and caught up
+    private List<ChangeEvent> take(Subscription subscription) {
+        lock.lock();
+        try {
+            while (subscription.next == nextSequence) {
+                if (closed) {
+                    return null;
+                }
+                published.awaitUninterruptibly();
+            }
+            int count = (int) Math.min(subscription.maxBatch, nextSequence - subscription.next);
+            List<ChangeEvent> batch = new ArrayList<>(count);
+            for (long sequence = subscription.next; sequence < subscription.next + count; sequence++) {
+                batch.add(ring[(int) (sequence & mask)]);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Moves the subscriber past a delivered batch, freeing its slots for publishers
+    private void release(Subscription subscription, int count) {
+        lock.lock();
+        try {
+            subscription.next += count;
+            consumed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package events;
+
+import java.util.List;
+
+/**
+ * Consumes batches of events from a {@link ChangeStream}, in sequence order.
+ * Each subscriber runs on its own thread, so a slow subscriber only delays the publishers
+ * once it has fallen a whole ring buffer behind.
+ */
+public interface ChangeSubscriber {
+
+    /**
+     * @param batch One or more consecutive events, oldest first.
+     * @throws Exception If the batch could not be handled; the stream reports it and moves on.
+     */
+    void onEvents(List<ChangeEvent> batch) throws Exception;
+}
@@ -0,0 +1,109 @@
+package events;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends change events to a file as JSON lines, one event per line, so other processes can
+ * follow the stream with {@code tail -f}. Each batch is written and flushed in one go.
+ */
+public class FileChangeSink implements ChangeSubscriber, Closeable {
+
+    private final BufferedWriter writer;
+
+    /**
+     * Opens the file for appending. A partial last line left by a crash mid-write is cut off
+     * first, so the next event starts on a line of its own.
+     *
+     * @param file File to append to; created if missing.
+     * @throws IOException If the file cannot be opened or truncated.
+     */
+    public FileChangeSink(Path file) throws IOException {
+        if (Files.exists(file)) {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                long end = completeLength(raf);
+                if (end < raf.length()) {
+                    raf.setLength(end);
+                }
+            }
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void onEvents(List<ChangeEvent> batch) throws IOException {
+        for (ChangeEvent event : batch) {
+            writer.write(event.toJson());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Reads the sequence number of the last complete event in a change file, so a new stream can
+     * continue numbering where the previous run stopped.
+     *
+     * @param file Change file written by a sink.
+     * @return The last sequence number, or 0 if the file is missing or holds no complete event.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long lastSequence(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            long end = completeLength(raf);
+            if (end == 0) {
+                return 0;
+            }
+            long start = end - 1;
+            while (start > 0) {
+                raf.seek(start - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                start--;
+            }
+            byte[] line = new byte[(int) (end - start)];
+            raf.seek(start);
+            raf.readFully(line);
+            String text = new String(line, StandardCharsets.UTF_8);
+            String prefix = "{\"sequence\":";
+            if (!text.startsWith(prefix)) {
+                return 0;
+            }
+            int stop = prefix.length();
+            while (stop < text.length() && Character.isDigit(text.charAt(stop))) {
+                stop++;
+            }
+            return Long.parseLong(text.substring(prefix.length(), stop));
+        }
+    }
+
+    // Length of the file up to and including its last newline; a partial last line left by a
+    // crash mid-write is not counted
+    private static long completeLength(RandomAccessFile raf) throws IOException {
+        long end = raf.length();
+        while (end > 0) {
+            raf.seek(end - 1);
+            if (raf.read() == '\n') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,95 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets (HDR-style).
+ * Every power of two is split into 16 linear sub-buckets, giving about 6% relative
+ * precision over the full range of long values. Recording is a few atomic increments
+ * and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one measurement.
+     *
+     * @param nanos Duration in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Takes a consistent-enough copy of the histogram for reporting.
+     * Concurrent recordings may or may not be included.
+     *
+     * @return Summary statistics.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        // Bucket bounds can overshoot the largest recorded value, so percentiles are capped by it
+        long largest = max.get();
+        return new Snapshot(total, total == 0 ? 0 : sum.sum() / (double) total, largest,
+                Math.min(largest, percentile(copy, total, 0.50)), Math.min(largest, percentile(copy, total, 0.90)),
+                Math.min(largest, percentile(copy, total, 0.99)), Math.min(largest, percentile(copy, total, 0.999)));
+    }
+
+    /**
+     * Summary of a histogram; latencies are in nanoseconds.
+     */
+    public record Snapshot(long count, double mean, long max, long p50, long p90, long p99, long p999) {
+    }
+
+    // Values below 16 get their own bucket; larger values keep their top 4 bits below the leading one
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value that falls into the bucket
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS | index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static long percentile(long[] counts, long total, double p) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+}
@@ -0,0 +1,76 @@
+package metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically writes a metrics snapshot to a local file.
+ * Files ending in ".json" get JSON, anything else plain text. Each snapshot
+ * replaces the previous one atomically, so readers never see a partial file.
+ */
+public class MetricsExporter implements Closeable {
+
+    private final MetricsRegistry registry;
+    private final Path path;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "metrics-exporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param registry Metrics to export.
+     * @param path     Target file.
+     */
+    public MetricsExporter(MetricsRegistry registry, Path path) {
+        this.registry = registry;
+        this.path = path;
+    }
+
+    /**
+     * Starts writing a snapshot at a fixed interval.
+     *
+     * @param intervalSeconds Seconds between snapshots.
+     */
+    public void start(long intervalSeconds) {
+        executor.scheduleAtFixedRate(this::exportQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes one snapshot now.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void export() throws IOException {
+        String content = path.getFileName().toString().endsWith(".json") ? registry.toJson() : registry.toText();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stops the schedule and writes a final snapshot.
+     *
+     * @throws IOException If the final snapshot cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        export();
+    }
+
+    private void exportQuietly() {
+        try {
+            export();
+        } catch (IOException e) {
+            System.err.println("Metrics export failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package metrics;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds named counters, gauges, hit ratios and latency histograms.
+ * Services look up their metrics once when they are created and keep the references,
+ * so recording on hot paths is a lock-free update with no map lookup or allocation.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder[]> ratios = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name Metric name.
+     * @return The counter.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it on first use.
+     *
+     * @param name Metric name.
+     * @return The histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge that is sampled when a snapshot is taken.
+     *
+     * @param name  Metric name.
+     * @param value Supplies the current value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Registers a ratio hits / (hits + misses) computed when a snapshot is taken.
+     *
+     * @param name   Metric name.
+     * @param hits   Counter of hits.
+     * @param misses Counter of misses.
+     */
+    public void ratio(String name, LongAdder hits, LongAdder misses) {
+        ratios.put(name, new LongAdder[]{hits, misses});
+    }
+
+    /**
+     * Renders all metrics as plain text, one metric per line.
+     *
+     * @return Text snapshot.
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder("# metrics at ").append(Instant.now()).append('\n');
+        counters.forEach((name, value) -> out.append(name).append(' ').append(value.sum()).append('\n'));
+        gauges.forEach((name, value) -> out.append(name).append(' ').append(value.getAsLong()).append('\n'));
+        ratios.forEach((name, value) -> out.append(name).append(' ').append(format(ratio(value))).append('\n'));
+        histograms.forEach((name, histogram) -> {
+            LatencyHistogram.Snapshot s = histogram.snapshot();
+            out.append(name).append(" count=").append(s.count())
+                    .append(" mean_ns=").append(Math.round(s.mean()))
+                    .append(" p50_ns=").append(s.p50())
+                    .append(" p90_ns=").append(s.p90())
+                    .append(" p99_ns=").append(s.p99())
+                    .append(" p999_ns=").append(s.p999())
+                    .append(" max_ns=").append(s.max()).append('\n');
+        });
+        return out.toString();
+    }
+
+    /**
+     * Renders all metrics as a JSON object.
+     *
+     * @return JSON snapshot.
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder("{\n  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+
+        out.append("  \"counters\": {");
+        appendEntries(out, counters, value -> Long.toString(value.sum()));
+        out.append("},\n  \"gauges\": {");
+        appendEntries(out, gauges, value -> Long.toString(value.getAsLong()));
+        out.append("},\n  \"ratios\": {");
+        appendEntries(out, ratios, value -> format(ratio(value)));
+        out.append("},\n  \"histograms\": {");
+        appendEntries(out, histograms, histogram -> {
+            LatencyHistogram.Snapshot s = histogram.snapshot();
+            return "{\"count\": " + s.count() + ", \"mean_ns\": " + Math.round(s.mean())
+                    + ", \"p50_ns\": " + s.p50() + ", \"p90_ns\": " + s.p90() + ", \"p99_ns\": " + s.p99()
+                    + ", \"p999_ns\": " + s.p999() + ", \"max_ns\": " + s.max() + "}";
+        });
+        return out.append("}\n}\n").toString();
+    }
+
+    private static <T> void appendEntries(StringBuilder out, Map<String, T> map, java.util.function.Function<T, String> render) {
+        String separator = "\n    ";
+        for (Map.Entry<String, T> entry : map.entrySet()) {
+            out.append(separator).append('"').append(entry.getKey()).append("\": ").append(render.apply(entry.getValue()));
+            separator = ",\n    ";
+        }
+        if (!map.isEmpty()) {
+            out.append("\n  ");
+        }
+    }
+
+    private static double ratio(LongAdder[] hitsAndMisses) {
+        long hits = hitsAndMisses[0].sum();
+        long total = hits + hitsAndMisses[1].sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
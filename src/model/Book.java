@@ -2,21 +2,56 @@ package model;
 
 import model.enums.Status;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * Represents a book in the library.
+ * Represents a catalog record (title) in the library and the physical copies it owns.
+ * The number of copies on the shelf is kept in an atomic counter so copies can be
+ * lent and returned concurrently without locking the record.
  */
 public class Book {
 
     private String title;
     private String author;
     private String isbn;
-    private Status status;
+    private final AtomicInteger copies;
+    private final AtomicInteger availableCopies;
 
     public Book(String title, String author, String isbn) {
+        this(title, author, isbn, 1);
+    }
+
+    public Book(String title, String author, String isbn, int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("A book must have at least one copy: " + copies);
+        }
+        this.title = title;
+        this.author = author;
+        this.isbn = isbn;
+        this.copies = new AtomicInteger(copies);
+        this.availableCopies = new AtomicInteger(copies);  // New copies are available by default
+    }
+
+    /**
+     * Constructor for views whose copy counts live outside the record, such as in a
+     * library's columns. No counters are allocated, so the subclass must override
+     * every copy and status method.
+     *
+     * @param counters Marks the copy counts as kept by the subclass.
+     */
+    protected Book(String title, String author, String isbn, Counters counters) {
         this.title = title;
         this.author = author;
         this.isbn = isbn;
-        this.status = Status.AVAILABLE;  // New books are available by default
+        this.copies = null;
+        this.availableCopies = null;
+    }
+
+    /**
+     * Where a record's copy counts are kept when they are not in the record itself.
+     */
+    protected enum Counters {
+        EXTERNAL
     }
 
     // Getters
@@ -24,17 +59,65 @@ public class Book {
         return title;
     }
 
+    public String getAuthor() {
+        return author;
+    }
+
     public String getIsbn() {
         return isbn;
     }
 
+    public int getCopies() {
+        return copies.get();
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies.get();
+    }
+
+    /**
+     * A book is AVAILABLE while at least one copy is on the shelf.
+     *
+     * @return Current availability status.
+     */
     public Status getStatus() {
-        return status;
+        return availableCopies.get() > 0 ? Status.AVAILABLE : Status.UNAVAILABLE;
+    }
+
+    /**
+     * Takes one copy off the shelf if any is available.
+     *
+     * @return true if a copy was taken, false if all copies are lent out.
+     */
+    public boolean tryCheckOutCopy() {
+        int available;
+        do {
+            available = availableCopies.get();
+            if (available == 0) {
+                return false;
+            }
+        } while (!availableCopies.compareAndSet(available, available - 1));
+        return true;
+    }
+
+    /**
+     * Puts a lent copy back on the shelf.
+     */
+    public void returnCopy() {
+        availableCopies.incrementAndGet();
     }
 
-    // Setters
-    public void setStatus(Status status) {
-        this.status = status;
+    /**
+     * Adds new physical copies, all of them available.
+     *
+     * @param count Number of copies to add.
+     */
+    public void addCopies(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Copies to add must be positive: " + count);
+        }
+        copies.addAndGet(count);
+        availableCopies.addAndGet(count);
     }
 
     @Override
@@ -42,7 +125,8 @@ public class Book {
         return "Title: " + title +
                 "\nAuthor: " + author +
                 "\nISBN: " + isbn +
-                "\nStatus: " + status +
+                "\nStatus: " + getStatus() +
+                "\nCopies: " + getAvailableCopies() + " of " + getCopies() + " available" +
                 "\n-----------------------------";
     }
 }
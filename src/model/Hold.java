@@ -0,0 +1,104 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A member's reservation of a book that had no copy on the shelf.
+ * A hold waits in the book's queue until a returned copy is set aside for it;
+ * the member then has until the pickup deadline to check the copy out.
+ */
+public class Hold {
+
+    /**
+     * Lifecycle of a hold. WAITING and READY are the only open states.
+     */
+    public enum State {
+        WAITING,
+        READY,
+        FULFILLED,
+        CANCELLED,
+        EXPIRED
+    }
+
+    private final Member member;
+    private final Book book;
+    private final LocalDate placedDate;
+    /**
+     * State and pickup deadline, replaced together so readers never see one without the other.
+     */
+    private record Stage(State state, LocalDate pickupDeadline) {
+    }
+
+    private final AtomicReference<Stage> stage = new AtomicReference<>(new Stage(State.WAITING, null));
+
+    public Hold(Member member, Book book, LocalDate placedDate) {
+        this.member = member;
+        this.book = book;
+        this.placedDate = placedDate;
+    }
+
+    // Getters
+    public Member getMember() {
+        return member;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public LocalDate getPlacedDate() {
+        return placedDate;
+    }
+
+    public State getState() {
+        return stage.get().state();
+    }
+
+    /**
+     * @return Last day the set-aside copy can be picked up, or null while the hold is waiting.
+     */
+    public LocalDate getPickupDeadline() {
+        return stage.get().pickupDeadline();
+    }
+
+    /**
+     * Moves the hold from WAITING to READY with the given pickup deadline.
+     * The deadline is recorded only if the hold was still waiting.
+     *
+     * @param deadline Last day for pickup.
+     * @return false if the hold was no longer waiting.
+     */
+    public boolean markReady(LocalDate deadline) {
+        Stage current = stage.get();
+        // A hold only ever leaves WAITING, so a lost race means it is no longer waiting
+        return current.state() == State.WAITING
+                && stage.compareAndSet(current, new Stage(State.READY, deadline));
+    }
+
+    /**
+     * Atomically changes the state if it currently has the expected value.
+     *
+     * @param expected State the hold must be in.
+     * @param next     New state.
+     * @return true if the state was changed.
+     */
+    public boolean transition(State expected, State next) {
+        Stage current;
+        do {
+            current = stage.get();
+            if (current.state() != expected) {
+                return false;
+            }
+        } while (!stage.compareAndSet(current, new Stage(next, current.pickupDeadline())));
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        Stage current = stage.get();
+        return "Hold: " + book.getTitle() + " for " + member.getEmail() +
+                "\nState: " + current.state() +
+                (current.pickupDeadline() != null ? "\nPick up by: " + current.pickupDeadline() : "");
+    }
+}
@@ -0,0 +1,52 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * One immutable line in a member's debt ledger. Amounts are fixed-point cents.
+ *
+ * @param type        Whether the entry adds to (fee) or reduces (payment) the balance.
+ * @param amountCents Positive amount in cents.
+ * @param date        Date the entry was recorded.
+ * @param description Short human-readable reason.
+ */
+public record LedgerEntry(Type type, long amountCents, LocalDate date, String description) {
+
+    /**
+     * Kinds of ledger entries.
+     */
+    public enum Type {
+        FEE,
+        PAYMENT
+    }
+
+    public LedgerEntry {
+        if (amountCents <= 0) {
+            throw new IllegalArgumentException("Ledger amounts must be positive: " + amountCents);
+        }
+    }
+
+    /**
+     * @return The amount as it affects the balance: positive for fees, negative for payments.
+     */
+    public long signedAmountCents() {
+        return type == Type.FEE ? amountCents : -amountCents;
+    }
+
+    /**
+     * Formats a cent amount as currency units with two decimals, e.g. 1250 as "12.50".
+     *
+     * @param cents Amount in cents.
+     * @return Formatted amount.
+     */
+    public static String formatCents(long cents) {
+        String sign = cents < 0 ? "-" : "";
+        long abs = Math.abs(cents);
+        return sign + abs / 100 + "." + (abs % 100 < 10 ? "0" : "") + abs % 100;
+    }
+
+    @Override
+    public String toString() {
+        return date + " " + type + " " + formatCents(amountCents) + " " + description;
+    }
+}
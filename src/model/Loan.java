@@ -1,5 +1,6 @@
 package model;
 
+import java.time.Clock;
 import java.time.LocalDate;
 
 /**
@@ -11,7 +12,7 @@ public class Loan {
     private Book book;
     private LocalDate loanDate;
     private LocalDate dueDate;
-    private LocalDate returnDate;
+    private volatile LocalDate returnDate;
 
     /**
      * Creates a Loan instance with loanDate set to now and dueDate one month later.
@@ -20,17 +21,47 @@ public class Loan {
      * @param book   Borrowed book.
      */
     public Loan(Member member, Book book) {
+        this(member, book, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a Loan instance with loanDate set to the clock's current date and dueDate one month later.
+     *
+     * @param member Borrowing member.
+     * @param book   Borrowed book.
+     * @param clock  Source of the current date.
+     */
+    public Loan(Member member, Book book, Clock clock) {
+        this(member, book, LocalDate.now(clock));
+    }
+
+    /**
+     * Creates a Loan instance with the given loan date and dueDate one month later.
+     *
+     * @param member   Borrowing member.
+     * @param book     Borrowed book.
+     * @param loanDate Date the book was lent.
+     */
+    public Loan(Member member, Book book, LocalDate loanDate) {
         this.member = member;
         this.book = book;
-        this.loanDate = LocalDate.now();
+        this.loanDate = loanDate;
         this.dueDate = loanDate.plusMonths(1);
     }
 
     //Getters
+    public Member getMember() {
+        return member;
+    }
+
     public Book getBook() {
         return book;
     }
 
+    public LocalDate getLoanDate() {
+        return loanDate;
+    }
+
     public LocalDate getDueDate() {
         return dueDate;
     }
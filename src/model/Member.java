@@ -1,10 +1,13 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Represents a library member with personal info and their loan records.
+ * Represents a library member with personal info, their loan records and debt ledger.
+ * The ledger is append-only; the running balance is updated with every entry so it
+ * can be read in constant time.
  */
 public class Member {
 
@@ -13,8 +16,11 @@ public class Member {
     private String email;
     private String mobilePhone;
     private String address;
-    private final List<Loan> loanList = new ArrayList<>();
-    private double debt;
+    // Synchronized because loans for different books may be added from different threads
+    private final List<Loan> loanList = Collections.synchronizedList(new ArrayList<>());
+    // Append-only fee and payment history, guarded by this member's monitor
+    private final List<LedgerEntry> ledger = new ArrayList<>();
+    private volatile long balanceCents;
 
     public Member(String name, String surname, String email, String mobilePhone, String address) {
         this.name = name;
@@ -25,21 +31,52 @@ public class Member {
     }
 
     // Getters
+    public String getName() {
+        return name;
+    }
+
+    public String getSurname() {
+        return surname;
+    }
+
     public String getEmail() {
         return email;
     }
 
+    public String getMobilePhone() {
+        return mobilePhone;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
     public List<Loan> getLoanList() {
         return loanList;
     }
 
-    public double getDebt() {
-        return debt;
+    /**
+     * @return Outstanding debt in cents: all fees minus all payments.
+     */
+    public long getBalanceCents() {
+        return balanceCents;
+    }
+
+    /**
+     * @return Copy of the ledger in the order entries were recorded.
+     */
+    public synchronized List<LedgerEntry> getLedger() {
+        return List.copyOf(ledger);
     }
 
-    //Setters
-    public void setDebt(double debt) {
-        this.debt = debt;
+    /**
+     * Appends an entry to the ledger and updates the running balance.
+     *
+     * @param entry Fee or payment to record.
+     */
+    public synchronized void record(LedgerEntry entry) {
+        ledger.add(entry);
+        balanceCents += entry.signedAmountCents();
     }
 
     @Override
@@ -49,7 +86,7 @@ public class Member {
                 "\nEmail: " + email +
                 "\nMobile Phone Number: " + mobilePhone +
                 "\nAddress: " + address +
-                "\nDebt: " + debt +
+                "\nDebt: " + LedgerEntry.formatCents(balanceCents) +
                 "\n-----------------------------";
     }
 
@@ -0,0 +1,295 @@
+package persistence;
+
+import model.Book;
+import model.LedgerEntry;
+import model.Loan;
+import model.Member;
+import service.Library;
+import service.LibraryEventListener;
+import service.LoanService;
+import service.MemberService;
+import service.MutationGate;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persists library state as a snapshot plus a write-ahead log of mutations.
+ * On startup the snapshot is loaded and the log tail replayed; afterwards the store
+ * listens to the services and appends every create, check-out and return event.
+ * A new snapshot is taken in the background every {@code snapshotInterval} events: the state
+ * is copied while the services hold mutations back at the {@link MutationGate}, so it matches
+ * the log up to a known sequence, and is then written while the services carry on. The log
+ * records the snapshot covers are dropped afterwards; recovery skips any that remain.
+ */
+public class LibraryStore implements LibraryEventListener, Closeable {
+
+    // Log record types
+    private static final byte BOOK_CREATED = 1;
+    private static final byte MEMBER_CREATED = 2;
+    private static final byte BOOK_CHECKED_OUT = 3;
+    private static final byte BOOK_RETURNED = 4;
+    private static final byte BOOK_CREATED_WITH_COPIES = 5;
+    private static final byte COPIES_ADDED = 6;
+    private static final byte BOOK_RETURNED_CENTS = 7;
+    private static final byte PAYMENT_RECORDED = 8;
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final Library library;
+    private final MemberService memberService;
+    private final LoanService loanService;
+    private final int snapshotInterval;
+    private final int syncBatchSize;
+    private final long syncIntervalMillis;
+
+    // Held by the services from each mutation until it is logged; closed while a snapshot is captured
+    private final MutationGate gate = new MutationGate();
+
+    // Takes the periodic snapshots, so they do not run on the thread whose event triggered them
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "library-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+
+    // Serializes snapshots; never held while appending
+    private final Object snapshotLock = new Object();
+
+    private volatile WriteAheadLog log;
+    private int eventsSinceSnapshot;
+
+    /**
+     * @param directory          Directory holding the snapshot and log files.
+     * @param library            Book service to restore and observe.
+     * @param memberService      Member service to restore and observe.
+     * @param loanService        Loan service to restore and observe.
+     * @param snapshotInterval   Number of logged events between snapshots.
+     * @param syncBatchSize      Number of log records per forced disk sync.
+     * @param syncIntervalMillis Maximum delay before buffered log records are synced.
+     */
+    public LibraryStore(Path directory, Library library, MemberService memberService, LoanService loanService,
+                        int snapshotInterval, int syncBatchSize, long syncIntervalMillis) {
+        this.snapshotPath = directory.resolve("library.snapshot");
+        this.logPath = directory.resolve("library.wal");
+        this.library = library;
+        this.memberService = memberService;
+        this.loanService = loanService;
+        this.snapshotInterval = snapshotInterval;
+        this.syncBatchSize = syncBatchSize;
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    /**
+     * Restores state from the snapshot and log, then starts recording new events.
+     * The services must be empty when this is called. A mapped catalog first has the books its
+     * snapshot keeps outside the catalog segment folded into a new segment once they grow large.
+     *
+     * @throws IOException If the files cannot be read, or a restored loan finds no copy left.
+     */
+    public void recover() throws IOException {
+        Files.createDirectories(snapshotPath.getParent());
+        Snapshot.foldIntoSegment(snapshotPath, library);
+
+        log = WriteAheadLog.open(logPath, syncBatchSize, syncIntervalMillis);
+        try {
+            long sequence = Files.exists(snapshotPath)
+                    ? Snapshot.read(snapshotPath, library, memberService, loanService)
+                    : 0;
+            eventsSinceSnapshot = (int) log.replay(sequence, this::apply);
+        } catch (IllegalStateException e) {
+            // A restored loan found no copy to take, so the files disagree with each other
+            log.close();
+            throw new IOException("Inconsistent library state in " + snapshotPath.getParent() + ": " + e.getMessage(), e);
+        }
+
+        library.setEventListener(this);
+        memberService.setEventListener(this);
+        loanService.setEventListener(this);
+        library.setMutationGate(gate);
+        memberService.setMutationGate(gate);
+        loanService.setMutationGate(gate);
+    }
+
+    /**
+     * Writes a snapshot of the current state and drops the log records it covers.
+     * Mutations are only held back while the state is copied, not while it is written.
+     * Must not be called from a listener callback.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            WriteAheadLog log = this.log;
+            Snapshot snapshot = gate.closeFor(() -> Snapshot.capture(log.lastSequence(), library, memberService));
+            snapshot.write(snapshotPath);
+            log.discardThrough(snapshot.sequence());
+        }
+    }
+
+    @Override
+    public void bookCreated(Book book) {
+        append(BOOK_CREATED_WITH_COPIES, out -> {
+            out.writeUTF(book.getTitle());
+            out.writeUTF(book.getAuthor());
+            out.writeUTF(book.getIsbn());
+            out.writeInt(book.getCopies());
+        });
+    }
+
+    @Override
+    public void copiesAdded(Book book, int copies) {
+        append(COPIES_ADDED, out -> {
+            out.writeUTF(book.getIsbn());
+            out.writeInt(copies);
+        });
+    }
+
+    @Override
+    public void memberCreated(Member member) {
+        append(MEMBER_CREATED, out -> {
+            out.writeUTF(member.getName());
+            out.writeUTF(member.getSurname());
+            out.writeUTF(member.getEmail());
+            out.writeUTF(member.getMobilePhone());
+            out.writeUTF(member.getAddress());
+        });
+    }
+
+    @Override
+    public void bookCheckedOut(Loan loan) {
+        append(BOOK_CHECKED_OUT, out -> {
+            out.writeUTF(loan.getMember().getEmail());
+            out.writeUTF(loan.getBook().getIsbn());
+            out.writeLong(loan.getLoanDate().toEpochDay());
+        });
+    }
+
+    @Override
+    public void bookReturned(Loan loan, long feeCents) {
+        append(BOOK_RETURNED_CENTS, out -> {
+            out.writeUTF(loan.getMember().getEmail());
+            out.writeUTF(loan.getBook().getIsbn());
+            out.writeLong(loan.getReturnDate().toEpochDay());
+            out.writeLong(feeCents);
+        });
+    }
+
+    @Override
+    public void paymentRecorded(Member member, LedgerEntry payment) {
+        append(PAYMENT_RECORDED, out -> {
+            out.writeUTF(member.getEmail());
+            out.writeLong(payment.amountCents());
+            out.writeLong(payment.date().toEpochDay());
+            out.writeUTF(payment.description());
+        });
+    }
+
+    /**
+     * Takes a final snapshot and closes the log.
+     *
+     * @throws IOException If the snapshot or log cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        if (log == null) return;
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        synchronized (this) {
+            log.close();
+            log = null;
+        }
+    }
+
+    // Writes one event to the log and queues a snapshot when the interval is reached
+    private synchronized void append(byte type, PayloadWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writer.write(out);
+            log.append(type, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist library event", e);
+        }
+
+        if (++eventsSinceSnapshot >= snapshotInterval && snapshotQueued.compareAndSet(false, true)) {
+            eventsSinceSnapshot = 0;
+            try {
+                snapshotter.execute(this::snapshotQuietly);
+            } catch (RejectedExecutionException e) {
+                // Closing; close() takes the final snapshot
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        snapshotQueued.set(false);
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            // The log keeps every record, so nothing is lost; the next interval tries again
+            System.err.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    // Re-applies one logged event to the services
+    private void apply(long sequence, byte type, DataInput in) throws IOException {
+        switch (type) {
+            case BOOK_CREATED -> library.restore(in.readUTF(), in.readUTF(), in.readUTF(), 1);
+            case BOOK_CREATED_WITH_COPIES -> library.restore(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt());
+            case COPIES_ADDED -> {
+                Book book = library.findBookByIsbn(in.readUTF());
+                int copies = in.readInt();
+                if (book != null) {
+                    book.addCopies(copies);
+                }
+            }
+            case MEMBER_CREATED -> memberService.restore(in.readUTF(), in.readUTF(), in.readUTF(),
+                    in.readUTF(), in.readUTF());
+            case BOOK_CHECKED_OUT -> {
+                Member member = memberService.findMemberByEmail(in.readUTF());
+                Book book = library.findBookByIsbn(in.readUTF());
+                LocalDate loanDate = LocalDate.ofEpochDay(in.readLong());
+                if (member != null && book != null) {
+                    loanService.restoreLoan(member, book, loanDate, null);
+                }
+            }
+            case BOOK_RETURNED, BOOK_RETURNED_CENTS -> {
+                Member member = memberService.findMemberByEmail(in.readUTF());
+                Book book = library.findBookByIsbn(in.readUTF());
+                LocalDate returnDate = LocalDate.ofEpochDay(in.readLong());
+                // Older records stored the fee in whole currency units
+                long feeCents = type == BOOK_RETURNED ? in.readLong() * 100 : in.readLong();
+                if (member != null && book != null) {
+                    loanService.restoreReturn(book, member, returnDate, feeCents);
+                }
+            }
+            case PAYMENT_RECORDED -> {
+                Member member = memberService.findMemberByEmail(in.readUTF());
+                LedgerEntry payment = new LedgerEntry(LedgerEntry.Type.PAYMENT, in.readLong(),
+                        LocalDate.ofEpochDay(in.readLong()), in.readUTF());
+                if (member != null) {
+                    member.record(payment);
+                }
+            }
+            default -> throw new IOException("Unknown log record type " + type + " at sequence " + sequence);
+        }
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
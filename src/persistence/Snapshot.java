@@ -0,0 +1,416 @@
+package persistence;
+
+import model.Book;
+import model.LedgerEntry;
+import model.Loan;
+import model.Member;
+import service.CachingLibrary;
+import service.CatalogSegment;
+import service.ISBNValidator;
+import service.Library;
+import service.LoanService;
+import service.MappedLibrary;
+import service.MemberService;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of all books, members and loans.
+ * A snapshot is first captured in memory, which is quick enough to run while mutations are
+ * held back, and then written to disk without holding anything up.
+ * The file is written and read strictly sequentially through large buffers.
+ * <p>
+ * For a {@link MappedLibrary} the snapshot refers to the mapped {@link CatalogSegment} by its id
+ * and stores only the books outside the segment and the segment records whose copy count changed;
+ * {@link #foldIntoSegment(Path, Library)} merges them into a new segment once they grow large.
+ * Other catalogs store every book. Loans refer to books by ISBN, so folding leaves them untouched.
+ */
+public final class Snapshot {
+
+    private static final int MAGIC = 0x4C4D5331; // "LMS1"
+    private static final int VERSION = 4;
+
+    // Version 1 stored a status byte per book instead of a copy count
+    private static final int VERSION_SINGLE_COPY = 1;
+
+    // Versions 1 and 2 stored a single debt amount per member instead of a ledger
+    private static final int VERSION_PLAIN_DEBT = 2;
+
+    // Versions up to 3 stored every book and referred to loaned books by their position in the file
+    private static final int VERSION_ALL_BOOKS = 3;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    // Books outside the segment are folded into a new one once they, together with the changed
+    // segment records, reach this fraction of the segment's size
+    private static final int FOLD_RATIO = 16;
+
+    // Marks a loan that has not been returned yet
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    /**
+     * A captured member with copies of its ledger and loans.
+     */
+    private record MemberState(String name, String surname, String email, String mobilePhone, String address,
+                               List<LedgerEntry> ledger, List<LoanState> loans) {
+    }
+
+    /**
+     * A captured loan.
+     */
+    private record LoanState(String isbn, long loanDay, long returnDay) {
+    }
+
+    // Last log sequence whose effects are included
+    private final long sequence;
+
+    // Id of the segment the books below are relative to; 0 if they are the whole catalog
+    private final int segmentId;
+
+    // Segment records whose copy count changed, and the copies added to each
+    private final int[] changedRecords;
+    private final int[] addedCopies;
+
+    // Book columns for the books outside the segment, in catalog order
+    private final String[] titles;
+    private final String[] authors;
+    private final String[] isbns;
+    private final int[] copies;
+
+    private final List<MemberState> members;
+
+    private Snapshot(long sequence, int segmentId, int[] changedRecords, int[] addedCopies,
+                     String[] titles, String[] authors, String[] isbns, int[] copies, List<MemberState> members) {
+        this.sequence = sequence;
+        this.segmentId = segmentId;
+        this.changedRecords = changedRecords;
+        this.addedCopies = addedCopies;
+        this.titles = titles;
+        this.authors = authors;
+        this.isbns = isbns;
+        this.copies = copies;
+        this.members = members;
+    }
+
+    /**
+     * Copies the current state into memory. The caller must hold mutations back while this runs,
+     * so the copy contains exactly the events up to {@code sequence}.
+     *
+     * @param sequence      Last log sequence whose effects are in the services.
+     * @param library       Book source.
+     * @param memberService Member and loan source.
+     * @return The captured snapshot, ready to be written.
+     */
+    public static Snapshot capture(long sequence, Library library, MemberService memberService) {
+        MappedLibrary mapped = mappedCatalog(library);
+        int segmentId = mapped == null ? 0 : mapped.segment().id();
+        int[] changedRecords = new int[0];
+        int[] addedCopies = new int[0];
+        List<Book> books;
+        if (segmentId == 0) {
+            books = library.list();
+        } else {
+            int segmentSize = mapped.segment().size();
+            int changed = 0;
+            for (int id = 0; id < segmentSize; id++) {
+                if (mapped.addedCopies(id) != 0) changed++;
+            }
+            changedRecords = new int[changed];
+            addedCopies = new int[changed];
+            for (int id = 0, i = 0; id < segmentSize && i < changed; id++) {
+                int added = mapped.addedCopies(id);
+                if (added != 0) {
+                    changedRecords[i] = id;
+                    addedCopies[i++] = added;
+                }
+            }
+            books = mapped.added();
+        }
+
+        int bookCount = books.size();
+        String[] titles = new String[bookCount];
+        String[] authors = new String[bookCount];
+        String[] isbns = new String[bookCount];
+        int[] copies = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Book book = books.get(i);
+            titles[i] = book.getTitle();
+            authors[i] = book.getAuthor();
+            isbns[i] = book.getIsbn();
+            copies[i] = book.getCopies();
+        }
+
+        List<Member> source = memberService.list();
+        List<MemberState> members = new ArrayList<>(source.size());
+        for (Member member : source) {
+            List<Loan> loanList = member.getLoanList();
+            List<LoanState> loans;
+            synchronized (loanList) {
+                loans = new ArrayList<>(loanList.size());
+                for (Loan loan : loanList) {
+                    LocalDate returnDate = loan.getReturnDate();
+                    loans.add(new LoanState(loan.getBook().getIsbn(), loan.getLoanDate().toEpochDay(),
+                            returnDate == null ? NO_DATE : returnDate.toEpochDay()));
+                }
+            }
+            members.add(new MemberState(member.getName(), member.getSurname(), member.getEmail(),
+                    member.getMobilePhone(), member.getAddress(), member.getLedger(), loans));
+        }
+        return new Snapshot(sequence, segmentId, changedRecords, addedCopies, titles, authors, isbns, copies, members);
+    }
+
+    /**
+     * @return Last log sequence whose effects are included.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Writes the snapshot atomically: data goes to a temporary file which then replaces the target.
+     *
+     * @param path Snapshot file location.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+
+            out.writeInt(segmentId);
+            out.writeInt(changedRecords.length);
+            for (int i = 0; i < changedRecords.length; i++) {
+                out.writeInt(changedRecords[i]);
+                out.writeInt(addedCopies[i]);
+            }
+
+            out.writeInt(isbns.length);
+            for (int i = 0; i < isbns.length; i++) {
+                writeString(out, titles[i]);
+                writeString(out, authors[i]);
+                writeString(out, isbns[i]);
+                out.writeInt(copies[i]);
+            }
+
+            out.writeInt(members.size());
+            for (MemberState member : members) {
+                writeString(out, member.name());
+                writeString(out, member.surname());
+                writeString(out, member.email());
+                writeString(out, member.mobilePhone());
+                writeString(out, member.address());
+
+                out.writeInt(member.ledger().size());
+                for (LedgerEntry entry : member.ledger()) {
+                    out.writeByte(entry.type().ordinal());
+                    out.writeLong(entry.amountCents());
+                    out.writeLong(entry.date().toEpochDay());
+                    writeString(out, entry.description());
+                }
+
+                out.writeInt(member.loans().size());
+                for (LoanState loan : member.loans()) {
+                    writeString(out, loan.isbn());
+                    out.writeLong(loan.loanDay());
+                    out.writeLong(loan.returnDay());
+                }
+            }
+
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Merges the books a snapshot keeps outside its catalog segment into a new segment once they
+     * have grown large, and rewrites the snapshot to refer to it. Segment files the snapshot no
+     * longer refers to are deleted. Must run before the snapshot is read, while nothing maps the segments.
+     * Does nothing unless the catalog is a {@link MappedLibrary}.
+     *
+     * @param path    Snapshot file location.
+     * @param library The catalog the snapshot will be read into.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void foldIntoSegment(Path path, Library library) throws IOException {
+        if (mappedCatalog(library) == null || !Files.exists(path)) {
+            return;
+        }
+        Path directory = path.toAbsolutePath().getParent();
+        int segmentId = writeFolded(path, directory);
+        if (segmentId == 0) {
+            return;
+        }
+
+        // A crash before the move leaves the old snapshot and segment in place
+        Files.move(path.resolveSibling(path.getFileName() + ".tmp"), path,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "catalog-*.segment")) {
+            for (Path segment : segments) {
+                if (!segment.getFileName().toString().equals(CatalogSegment.fileName(segmentId))) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        } catch (IOException e) {
+            // Stale segments are only wasted space; the next fold tries again
+        }
+    }
+
+    // Writes the new segment and the rewritten snapshot next to the old one; returns the new segment id,
+    // or 0 if the snapshot does not need folding
+    private static int writeFolded(Path path, Path directory) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != VERSION) {
+                // Older snapshots are read in full; the next snapshot is folded
+                return 0;
+            }
+            long sequence = in.readLong();
+            int oldSegmentId = in.readInt();
+            CatalogSegment segment = oldSegmentId == 0 ? CatalogSegment.empty() : CatalogSegment.open(directory, oldSegmentId);
+            int[] added = new int[segment.size()];
+            int changed = in.readInt();
+            for (int i = 0; i < changed; i++) {
+                added[in.readInt()] = in.readInt();
+            }
+            int bookCount = in.readInt();
+            if (changed + bookCount == 0 || changed + bookCount < segment.size() / FOLD_RATIO) {
+                return 0;
+            }
+
+            // Books without a valid ISBN cannot go into a segment and stay in the snapshot
+            List<Book> folded = new ArrayList<>(bookCount);
+            List<Book> kept = new ArrayList<>();
+            for (int i = 0; i < bookCount; i++) {
+                Book book = new Book(in.readUTF(), in.readUTF(), in.readUTF(), in.readInt());
+                (ISBNValidator.pack(book.getIsbn()) == ISBNValidator.INVALID ? kept : folded).add(book);
+            }
+            int segmentId = segment.writeMerged(directory, added, folded);
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_BYTES))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(sequence);
+                out.writeInt(segmentId);
+                out.writeInt(0);
+                out.writeInt(kept.size());
+                for (Book book : kept) {
+                    writeString(out, book.getTitle());
+                    writeString(out, book.getAuthor());
+                    writeString(out, book.getIsbn());
+                    out.writeInt(book.getCopies());
+                }
+                // Members and loans refer to books by ISBN and are copied as they are
+                in.transferTo(out);
+
+                out.flush();
+                file.getFD().sync();
+            }
+            return segmentId;
+        }
+    }
+
+    /**
+     * Loads a snapshot into empty services. A snapshot that refers to a catalog segment maps
+     * that segment into the library, which must then be a {@link MappedLibrary}.
+     *
+     * @param path          Snapshot file location.
+     * @param library       Receives the books.
+     * @param memberService Receives the members.
+     * @param loanService   Receives the loans.
+     * @return Last log sequence included in the snapshot.
+     * @throws IOException If the file cannot be read, is not a snapshot, or refers to a segment that cannot be mapped.
+     */
+    public static long read(Path path, Library library, MemberService memberService, LoanService loanService) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version < VERSION_SINGLE_COPY || version > VERSION) {
+                throw new IOException("Unsupported snapshot file: " + path);
+            }
+            long sequence = in.readLong();
+
+            if (version > VERSION_ALL_BOOKS) {
+                int segmentId = in.readInt();
+                MappedLibrary mapped = mappedCatalog(library);
+                if (segmentId != 0) {
+                    if (mapped == null) {
+                        throw new IOException("Snapshot " + path + " refers to a catalog segment, but the catalog is not mapped");
+                    }
+                    mapped.mapSegment(CatalogSegment.open(path.toAbsolutePath().getParent(), segmentId));
+                }
+                int changed = in.readInt();
+                for (int i = 0; i < changed; i++) {
+                    mapped.restoreAddedCopies(in.readInt(), in.readInt());
+                }
+            }
+
+            Book[] books = new Book[in.readInt()];
+            for (int i = 0; i < books.length; i++) {
+                String title = in.readUTF();
+                String author = in.readUTF();
+                String isbn = in.readUTF();
+                // Availability is not stored: restoring the open loans takes the copies off the shelf
+                int copies = version == VERSION_SINGLE_COPY ? skipStatus(in) : in.readInt();
+                books[i] = library.restore(title, author, isbn, copies);
+            }
+
+            int memberCount = in.readInt();
+            for (int i = 0; i < memberCount; i++) {
+                Member member = memberService.restore(in.readUTF(), in.readUTF(), in.readUTF(),
+                        in.readUTF(), in.readUTF());
+                if (version <= VERSION_PLAIN_DEBT) {
+                    long debtCents = Math.round(in.readDouble() * 100);
+                    if (debtCents > 0) {
+                        member.record(new LedgerEntry(LedgerEntry.Type.FEE, debtCents, LocalDate.now(), "Balance carried over"));
+                    }
+                } else {
+                    LedgerEntry.Type[] types = LedgerEntry.Type.values();
+                    int entryCount = in.readInt();
+                    for (int j = 0; j < entryCount; j++) {
+                        member.record(new LedgerEntry(types[in.readByte()], in.readLong(),
+                                LocalDate.ofEpochDay(in.readLong()), in.readUTF()));
+                    }
+                }
+
+                int loanCount = in.readInt();
+                for (int j = 0; j < loanCount; j++) {
+                    Book book = version > VERSION_ALL_BOOKS ? library.findBookByIsbn(in.readUTF()) : books[in.readInt()];
+                    LocalDate loanDate = LocalDate.ofEpochDay(in.readLong());
+                    long returnDay = in.readLong();
+                    if (book != null) {
+                        loanService.restoreLoan(member, book, loanDate, returnDay == NO_DATE ? null : LocalDate.ofEpochDay(returnDay));
+                    }
+                }
+            }
+            return sequence;
+        }
+    }
+
+    // The mapped catalog behind the library, or null if the books live on the heap
+    private static MappedLibrary mappedCatalog(Library library) {
+        Library catalog = library instanceof CachingLibrary cached ? cached.getDelegate() : library;
+        return catalog instanceof MappedLibrary mapped ? mapped : null;
+    }
+
+    private static int skipStatus(DataInput in) throws IOException {
+        in.readByte();
+        return 1;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeUTF(value == null ? "" : value);
+    }
+}
@@ -0,0 +1,304 @@
+package persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of sequence-numbered records.
+ * Record layout: sequence (long), type (byte), payload length (int), payload, CRC32 (int).
+ * Appends are buffered and forced to disk in batches, either when the batch is full
+ * or when the background flusher runs.
+ */
+public class WriteAheadLog implements Closeable {
+
+    // Bytes before the payload: sequence + type + length
+    private static final int HEADER_BYTES = Long.BYTES + 1 + Integer.BYTES;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Callback invoked for each record during replay.
+     */
+    public interface RecordHandler {
+        void handle(long sequence, byte type, DataInput payload) throws IOException;
+    }
+
+    private final Path path;
+    // Replaced when old records are discarded
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private final int batchSize;
+    private final ScheduledExecutorService flusher;
+
+    private long lastSequence;
+    private int pending;
+    private IOException flushFailure;
+
+    private WriteAheadLog(Path path, int batchSize, boolean background) throws IOException {
+        this.path = path;
+        this.channel = openChannel(path);
+        this.batchSize = Math.max(1, batchSize);
+        this.flusher = background ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Opens (or creates) a log file and starts its background flusher.
+     *
+     * @param path                Log file location.
+     * @param batchSize           Number of appended records after which the log is forced to disk.
+     * @param flushIntervalMillis Maximum time a record stays unsynced; 0 disables the background flusher.
+     * @return The open log.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static WriteAheadLog open(Path path, int batchSize, long flushIntervalMillis) throws IOException {
+        WriteAheadLog log = new WriteAheadLog(path, batchSize, flushIntervalMillis > 0);
+        // Scheduled only once the log is fully constructed
+        if (log.flusher != null) {
+            log.flusher.scheduleWithFixedDelay(log::backgroundSync, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return log;
+    }
+
+    /**
+     * Reads every intact record and passes those newer than {@code afterSequence} to the handler.
+     * A torn or corrupt tail (e.g. from a crash mid-write) is truncated.
+     * Must be called before the first append.
+     *
+     * @param afterSequence Records with a sequence at or below this value are skipped.
+     * @param handler       Callback for each replayed record.
+     * @return Number of records handed to the handler.
+     * @throws IOException If the file cannot be read or the handler fails.
+     */
+    public synchronized long replay(long afterSequence, RecordHandler handler) throws IOException {
+        lastSequence = afterSequence;
+        long validEnd = 0;
+        long replayed = 0;
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 20));
+        byte[] header = new byte[HEADER_BYTES];
+
+        while (true) {
+            if (!readFully(in, header)) break;
+            ByteBuffer view = ByteBuffer.wrap(header);
+            long sequence = view.getLong();
+            byte type = view.get();
+            int length = view.getInt();
+            if (length < 0 || validEnd + HEADER_BYTES + length + Integer.BYTES > channel.size()) break;
+
+            byte[] payload = new byte[length];
+            if (!readFully(in, payload)) break;
+            crc.reset();
+            crc.update(header);
+            crc.update(payload);
+            int storedCrc;
+            try {
+                storedCrc = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            if (storedCrc != (int) crc.getValue()) break;
+
+            validEnd += HEADER_BYTES + length + Integer.BYTES;
+            if (sequence > afterSequence) {
+                handler.handle(sequence, type, new DataInputStream(new ByteArrayInputStream(payload)));
+                lastSequence = sequence;
+                replayed++;
+            }
+        }
+
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+        return replayed;
+    }
+
+    /**
+     * Appends a record. The record is durable once {@link #sync()} has run.
+     *
+     * @param type    Record type.
+     * @param payload Record body.
+     * @return Sequence number assigned to the record.
+     * @throws IOException If a previous flush failed or the write fails.
+     */
+    public synchronized long append(byte type, byte[] payload) throws IOException {
+        if (flushFailure != null) {
+            throw flushFailure;
+        }
+
+        long sequence = ++lastSequence;
+        int recordBytes = HEADER_BYTES + payload.length + Integer.BYTES;
+        if (recordBytes > buffer.remaining()) {
+            drain();
+        }
+
+        ByteBuffer target = recordBytes > buffer.capacity() ? ByteBuffer.allocate(recordBytes) : buffer;
+        int start = target.position();
+        target.putLong(sequence).put(type).putInt(payload.length).put(payload);
+
+        crc.reset();
+        ByteBuffer written = target.duplicate();
+        written.position(start).limit(target.position());
+        crc.update(written);
+        target.putInt((int) crc.getValue());
+
+        if (target != buffer) {
+            target.flip();
+            writeFully(target);
+        }
+
+        if (++pending >= batchSize) {
+            sync();
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes buffered records and forces them to disk.
+     *
+     * @throws IOException If the write or force fails.
+     */
+    public synchronized void sync() throws IOException {
+        drain();
+        if (pending > 0) {
+            channel.force(false);
+            pending = 0;
+        }
+    }
+
+    /**
+     * Discards all records, e.g. after they have been captured in a snapshot.
+     * Sequence numbering continues from the current value.
+     *
+     * @throws IOException If the file cannot be truncated.
+     */
+    public synchronized void reset() throws IOException {
+        buffer.clear();
+        pending = 0;
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    /**
+     * Drops the records up to and including a sequence, e.g. once a snapshot covers them.
+     * Newer records are copied to a fresh file that atomically replaces the log, so a crash
+     * midway leaves the old log, whose covered records replay skips.
+     *
+     * @param sequence Last sequence to drop.
+     * @throws IOException If the log cannot be rewritten.
+     */
+    public synchronized void discardThrough(long sequence) throws IOException {
+        sync();
+        long end = channel.size();
+        long keepFrom = offsetAfter(sequence, end);
+        if (keepFrom == 0) {
+            return;
+        }
+        if (keepFrom == end) {
+            reset();
+            return;
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long copied = 0;
+            while (copied < end - keepFrom) {
+                copied += channel.transferTo(keepFrom + copied, end - keepFrom - copied, target);
+            }
+            target.force(true);
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = openChannel(path);
+        channel.position(channel.size());
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private synchronized void backgroundSync() {
+        if (!channel.isOpen()) return;
+        try {
+            sync();
+        } catch (IOException e) {
+            flushFailure = e;
+        }
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // File offset of the first record newer than the sequence, reading only the record headers
+    private long offsetAfter(long sequence, long end) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long offset = 0;
+        while (offset + HEADER_BYTES <= end) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, offset + header.position()) < 0) {
+                    return end;
+                }
+            }
+            header.flip();
+            if (header.getLong() > sequence) {
+                return offset;
+            }
+            header.get();
+            offset += HEADER_BYTES + header.getInt() + Integer.BYTES;
+        }
+        return end;
+    }
+
+    // Writes the pending buffer contents to the channel without forcing
+    private void drain() throws IOException {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private static boolean readFully(DataInputStream in, byte[] target) throws IOException {
+        try {
+            in.readFully(target);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+}
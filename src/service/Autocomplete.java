@@ -0,0 +1,488 @@
+package service;
+
+import model.Book;
+import model.Loan;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * Prefix and typo-tolerant autocomplete over book titles and authors.
+ * <p>
+ * Normalized titles and authors, and every suffix of them that starts at a word, are stored in a
+ * radix trie whose edges hold whole label runs, so a chain of single-child nodes costs one node.
+ * Every node keeps the most borrowed books below it, ranked by loan count. Loan counts only
+ * grow, so the lists stay exact by re-offering a book along its own paths when it is borrowed,
+ * and a prefix query is one walk down the trie plus a copy of that node's list.
+ * <p>
+ * The trie holds packed ISBNs rather than books; a query looks up only the books it returns in the
+ * catalog. It is built from the catalog at the first query instead of at startup, and books
+ * without a valid ISBN are not indexed.
+ * <p>
+ * Fuzzy queries walk the trie with a Levenshtein row per character. Where the whole query
+ * matches within the allowed number of edits, the node's books qualify at that distance, and the
+ * walk continues only while a deeper key could match more closely; each book keeps its smallest
+ * distance. Branches that can no longer match are pruned, so a misspelled query does not fall
+ * back to scanning the catalog.
+ * <p>
+ * Check-outs only go on a lock-free queue; the trie takes them in at the next query.
+ * Queries run under a read lock and inserts under a write lock.
+ */
+public class Autocomplete implements LibraryEventListener {
+
+    /**
+     * Most suggestions a query can return; also the length of each node's ranked list.
+     */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+    private static final long[] NO_BOOKS = new long[0];
+
+    /**
+     * Trie node. The label is the edge from the parent; children are sorted by the first
+     * character of their label.
+     */
+    private static final class Node {
+        char[] label;
+        char[] firstChars = NO_CHARS;
+        Node[] children = NO_NODES;
+        // Packed ISBNs, most borrowed first
+        long[] top = NO_BOOKS;
+
+        Node(char[] label) {
+            this.label = label;
+        }
+
+        int childIndex(char c) {
+            return Arrays.binarySearch(firstChars, c);
+        }
+
+        void addChild(Node child) {
+            int position = -childIndex(child.label[0]) - 1;
+            firstChars = insert(firstChars, position, child.label[0]);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, position);
+            grown[position] = child;
+            System.arraycopy(children, position, grown, position + 1, children.length - position);
+            children = grown;
+        }
+
+        private static char[] insert(char[] chars, int position, char c) {
+            char[] grown = new char[chars.length + 1];
+            System.arraycopy(chars, 0, grown, 0, position);
+            grown[position] = c;
+            System.arraycopy(chars, position, grown, position + 1, chars.length - position);
+            return grown;
+        }
+    }
+
+    /**
+     * A subtree that matched a fuzzy query.
+     */
+    private record Match(Node node, int distance) {
+    }
+
+    private final Node root = new Node(NO_CHARS);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Source of the indexed books and of the books queries return
+    private final Library catalog;
+
+    // Set once the catalog has been indexed; written under the write lock
+    private volatile boolean built;
+
+    // Books created before the catalog was indexed; guarded by the write lock
+    private final List<Book> pendingBooks = new ArrayList<>();
+
+    // Loan counts by packed ISBN, folded into the ranked lists; guarded by the write lock
+    private final Map<Long, Long> loans = new HashMap<>();
+
+    // Books borrowed since the last fold, queued without taking the lock
+    private final Queue<Book> pendingLoans = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param catalog Catalog to index at the first query and to look up suggested books in.
+     */
+    public Autocomplete(Library catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Indexes a new book.
+     */
+    @Override
+    public void bookCreated(Book book) {
+        add(book);
+    }
+
+    /**
+     * Counts a check-out toward the book's popularity.
+     */
+    @Override
+    public void bookCheckedOut(Loan loan) {
+        recordLoan(loan.getBook());
+    }
+
+    /**
+     * Adds a book under its title and author and under each of their suffixes that starts at a word.
+     * Until the catalog has been indexed the book is only remembered, in case the catalog did not
+     * list it yet when it is indexed.
+     *
+     * @param book The book to index.
+     */
+    public void add(Book book) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                index(book);
+            } else {
+                pendingBooks.add(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts one loan of the book. Safe to call from the check-out path; it takes no lock.
+     *
+     * @param book The borrowed book.
+     */
+    public void recordLoan(Book book) {
+        pendingLoans.offer(book);
+    }
+
+    /**
+     * Returns the most borrowed books with a word in the title or author from which the
+     * rest of the title or author begins with the prefix.
+     *
+     * @param prefix Text typed so far; case, accents and punctuation are ignored.
+     * @param limit  Maximum number of books, at most {@link #MAX_SUGGESTIONS}.
+     * @return Matching books, most borrowed first; empty if none match.
+     */
+    public List<Book> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        build();
+        foldPendingLoans();
+        long[] top;
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            top = node == null ? NO_BOOKS : node.top;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return books(Arrays.stream(top).limit(limit));
+    }
+
+    /**
+     * Like {@link #complete}, but tolerates typos: the prefix may be up to one edit
+     * (insertion, deletion or substitution) away from an indexed text, or two edits for
+     * prefixes of eight characters or more. Prefixes under four characters must match exactly.
+     *
+     * @param prefix Text typed so far; case, accents and punctuation are ignored.
+     * @param limit  Maximum number of books, at most {@link #MAX_SUGGESTIONS}.
+     * @return Matching books, closest match first, then most borrowed first.
+     */
+    public List<Book> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int maxEdits = key.length() < 4 ? 0 : key.length() < 8 ? 1 : 2;
+        build();
+        foldPendingLoans();
+        long[] ranked;
+        lock.readLock().lock();
+        try {
+            List<Match> matches = new ArrayList<>();
+            int[] firstRow = new int[key.length() + 1];
+            for (int i = 0; i < firstRow.length; i++) {
+                firstRow[i] = i;
+            }
+            for (Node child : root.children) {
+                collect(child, key.toCharArray(), firstRow, maxEdits, matches);
+            }
+
+            // Best distance per book, then rank by distance and loan count
+            Map<Long, Integer> distances = new HashMap<>();
+            for (Match match : matches) {
+                for (long isbn : match.node().top) {
+                    distances.merge(isbn, match.distance(), Math::min);
+                }
+            }
+            ranked = distances.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue()
+                            .thenComparing(entry -> -loans.getOrDefault(entry.getKey(), 0L)))
+                    .limit(Math.min(limit, MAX_SUGGESTIONS))
+                    .mapToLong(Map.Entry::getKey)
+                    .toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return books(Arrays.stream(ranked));
+    }
+
+    /**
+     * Lowercases, strips accents and turns every run of non-alphanumeric characters into one space.
+     *
+     * @param text Raw text.
+     * @return The normalized text, trimmed.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (space && out.length() > 0) {
+                    out.append(' ');
+                }
+                out.append(c);
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+
+    private static Set<String> keys(Book book) {
+        Set<String> keys = new LinkedHashSet<>();
+        addWordSuffixes(keys, normalize(book.getTitle()));
+        addWordSuffixes(keys, normalize(book.getAuthor()));
+        return keys;
+    }
+
+    // Adds the text and every suffix of it that starts at a word
+    private static void addWordSuffixes(Set<String> keys, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        keys.add(text);
+        for (int space = text.indexOf(' '); space >= 0; space = text.indexOf(' ', space + 1)) {
+            keys.add(text.substring(space + 1));
+        }
+    }
+
+    // Indexes the catalog and the books created meanwhile, once
+    private void build() {
+        if (built) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+            for (Book book : catalog.list()) {
+                index(book);
+            }
+            // Indexing a book twice leaves the trie as it was
+            for (Book book : pendingBooks) {
+                index(book);
+            }
+            pendingBooks.clear();
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void index(Book book) {
+        long isbn = ISBNValidator.pack(book.getIsbn());
+        if (isbn == ISBNValidator.INVALID) {
+            return;
+        }
+        for (String key : keys(book)) {
+            insert(key, isbn);
+        }
+    }
+
+    // Looks up the suggested books; ones no longer in the catalog are left out
+    private List<Book> books(LongStream isbns) {
+        return isbns.mapToObj(isbn -> catalog.findBookByIsbn(ISBNValidator.unpack(isbn)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Called with the write lock held
+    private void insert(String key, long book) {
+        Node node = root;
+        offer(node, book);
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.childIndex(key.charAt(position));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(position).toCharArray());
+                node.addChild(leaf);
+                offer(leaf, book);
+                return;
+            }
+            Node child = node.children[index];
+            int common = 0;
+            while (common < child.label.length && position + common < key.length()
+                    && child.label[common] == key.charAt(position + common)) {
+                common++;
+            }
+            if (common < child.label.length) {
+                // Split the edge; the new middle node covers the same books as the old child
+                Node middle = new Node(Arrays.copyOf(child.label, common));
+                middle.top = child.top.clone();
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.firstChars = new char[]{child.label[0]};
+                middle.children = new Node[]{child};
+                node.children[index] = middle;
+                child = middle;
+            }
+            offer(child, book);
+            node = child;
+            position += common;
+        }
+    }
+
+    // Puts the book into the node's ranked list if it belongs there; called with the write lock held
+    private void offer(Node node, long book) {
+        long[] top = node.top;
+        long count = loans.getOrDefault(book, 0L);
+        int current = -1;
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == book) {
+                current = i;
+                break;
+            }
+        }
+        if (current < 0) {
+            if (top.length == MAX_SUGGESTIONS) {
+                if (count <= loans.getOrDefault(top[top.length - 1], 0L)) {
+                    return;
+                }
+                top = top.clone();
+            } else {
+                top = Arrays.copyOf(top, top.length + 1);
+            }
+            current = top.length - 1;
+            top[current] = book;
+        } else {
+            top = top.clone();
+        }
+        // Move up past books with fewer loans; equal counts keep their order
+        while (current > 0 && loans.getOrDefault(top[current - 1], 0L) < count) {
+            top[current] = top[current - 1];
+            top[--current] = book;
+        }
+        node.top = top;
+    }
+
+    // Applies loans recorded since the last query to the ranked lists
+    private void foldPendingLoans() {
+        if (pendingLoans.isEmpty() || !lock.writeLock().tryLock()) {
+            return;
+        }
+        try {
+            Map<Book, Long> added = new HashMap<>();
+            Book borrowed;
+            while ((borrowed = pendingLoans.poll()) != null) {
+                added.merge(borrowed, 1L, Long::sum);
+            }
+            for (Map.Entry<Book, Long> entry : added.entrySet()) {
+                Book book = entry.getKey();
+                long isbn = ISBNValidator.pack(book.getIsbn());
+                if (isbn != ISBNValidator.INVALID) {
+                    loans.merge(isbn, entry.getValue(), Long::sum);
+                    for (String key : keys(book)) {
+                        reoffer(key, isbn);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Re-ranks the book in every node on the path of one of its keys; called with the write lock held
+    private void reoffer(String key, long book) {
+        Node node = root;
+        offer(node, book);
+        int position = 0;
+        while (position < key.length()) {
+            int index = node.childIndex(key.charAt(position));
+            if (index < 0) {
+                return;
+            }
+            node = node.children[index];
+            position += node.label.length;
+            offer(node, book);
+        }
+    }
+
+    // Node whose subtree holds every key starting with the prefix, or null
+    private Node find(String prefix) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            int index = node.childIndex(prefix.charAt(position));
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            for (int i = 0; i < child.label.length && position < prefix.length(); i++, position++) {
+                if (child.label[i] != prefix.charAt(position)) {
+                    return null;
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    // Walks a child's label one character at a time, extending the edit distance row. Once the
+    // whole query matches within the budget every key below qualifies at that distance; the walk
+    // goes on while a longer key could still match more closely
+    private static void collect(Node node, char[] query, int[] previous, int maxEdits, List<Match> matches) {
+        int[] row = previous;
+        int matched = Integer.MAX_VALUE;
+        for (char c : node.label) {
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            int best = next[0];
+            for (int i = 1; i < row.length; i++) {
+                int substitution = row[i - 1] + (query[i - 1] == c ? 0 : 1);
+                next[i] = Math.min(substitution, Math.min(row[i] + 1, next[i - 1] + 1));
+                best = Math.min(best, next[i]);
+            }
+            row = next;
+            if (row[query.length] <= maxEdits) {
+                matched = Math.min(matched, row[query.length]);
+            }
+            // The row minimum never drops further down the trie, so it bounds every later distance
+            if (best > maxEdits || best >= matched) {
+                if (matched <= maxEdits) {
+                    matches.add(new Match(node, matched));
+                }
+                return;
+            }
+        }
+        if (matched <= maxEdits) {
+            matches.add(new Match(node, matched));
+        }
+        for (Node child : node.children) {
+            collect(child, query, row, maxEdits, matches);
+        }
+    }
+}
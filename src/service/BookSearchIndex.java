@@ -0,0 +1,283 @@
+package service;
+
+import model.Book;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over book titles and authors.
+ * Keeps an n-gram index over every word of up to three characters, so a term of one or two
+ * characters has its own posting list and a longer term intersects the lists of its trigrams;
+ * searches only walk the posting lists of the query terms.
+ * Safe for concurrent use: searches share a read lock, additions take the write lock.
+ */
+class BookSearchIndex {
+
+    // Longest n-gram used for substring matching; shorter terms are indexed whole
+    private static final int GRAM_LENGTH = 3;
+
+    // Match weights used for ranking; title matches outrank author matches
+    private static final int TITLE_EXACT = 6;
+    private static final int TITLE_PREFIX = 4;
+    private static final int TITLE_SUBSTRING = 2;
+    private static final int AUTHOR_EXACT = 3;
+    private static final int AUTHOR_PREFIX = 2;
+    private static final int AUTHOR_SUBSTRING = 1;
+    private static final int FULL_TITLE_BONUS = 10;
+
+    // Indexed books in insertion order; the position is the entry id
+    private final List<Entry> entries = new ArrayList<>();
+
+    // Posting lists keyed by n-grams of one to GRAM_LENGTH characters, each ordered by entry id
+    private final Map<String, List<Entry>> gramIndex = new HashMap<>();
+
+    // Guards the entries and the posting map
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a book to the index.
+     *
+     * @param book The book to index.
+     */
+    void add(Book book) {
+        String title = normalize(book.getTitle());
+        String author = normalize(book.getAuthor());
+        String[] titleTokens = tokenize(title);
+        String[] authorTokens = tokenize(author);
+
+        Set<String> grams = new HashSet<>();
+        collect(titleTokens, grams);
+        collect(authorTokens, grams);
+
+        lock.writeLock().lock();
+        try {
+            Entry entry = new Entry(entries.size(), book, title, author, titleTokens, authorTokens);
+            entries.add(entry);
+            for (String gram : grams) {
+                gramIndex.computeIfAbsent(gram, k -> new ArrayList<>()).add(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds books whose title or author contains every term of the query.
+     * Results are ranked by match quality, best first.
+     *
+     * @param query One or more search terms (case-insensitive).
+     * @return Matching books, or every book if the query has no terms.
+     */
+    List<Book> search(String query) {
+        List<Match> matches = rank(query);
+        List<Book> result = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            result.add(match.book());
+        }
+        return result;
+    }
+
+    /**
+     * A search hit and its match score; higher scores are better matches.
+     */
+    record Match(Book book, int score) {
+    }
+
+    /**
+     * Same as {@link #search(String)}, keeping the scores so results from several
+     * indexes can be merged into one ranking.
+     *
+     * @param query One or more search terms (case-insensitive).
+     * @return Matches, best first; every book with score 0 if the query has no terms.
+     */
+    List<Match> rank(String query) {
+        String normalizedQuery = normalize(query);
+        String[] terms = tokenize(normalizedQuery);
+
+        lock.readLock().lock();
+        try {
+            return rank(normalizedQuery, terms);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Runs a search with the read lock held
+    private List<Match> rank(String normalizedQuery, String[] terms) {
+        if (terms.length == 0) {
+            List<Match> all = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                all.add(new Match(entry.book, 0));
+            }
+            return all;
+        }
+
+        // Start from the most selective term so intersections stay small
+        List<List<Entry>> postings = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            List<Entry> posting = postingsFor(term);
+            if (posting.isEmpty()) {
+                return Collections.emptyList();
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(List::size));
+
+        List<Entry> candidates = postings.get(0);
+        for (int i = 1; i < postings.size() && !candidates.isEmpty(); i++) {
+            candidates = intersect(candidates, postings.get(i));
+        }
+
+        // Verify candidates (n-grams may match out of order) and score them
+        List<Entry> matches = new ArrayList<>();
+        Map<Entry, Integer> scores = new HashMap<>();
+        for (Entry entry : candidates) {
+            int score = score(entry, terms);
+            if (score > 0) {
+                if (entry.title.equals(normalizedQuery)) {
+                    score += FULL_TITLE_BONUS;
+                }
+                matches.add(entry);
+                scores.put(entry, score);
+            }
+        }
+        matches.sort((a, b) -> scores.get(a).equals(scores.get(b))
+                ? Integer.compare(a.id, b.id)
+                : Integer.compare(scores.get(b), scores.get(a)));
+
+        List<Match> result = new ArrayList<>(matches.size());
+        for (Entry entry : matches) {
+            result.add(new Match(entry.book, scores.get(entry)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the candidate entries for a single term: the posting list of a short term itself,
+     * or the intersection of the trigram lists of a longer one.
+     */
+    private List<Entry> postingsFor(String term) {
+        if (term.length() <= GRAM_LENGTH) {
+            return gramIndex.getOrDefault(term, Collections.emptyList());
+        }
+        List<Entry> result = null;
+        for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+            List<Entry> posting = gramIndex.get(term.substring(i, i + GRAM_LENGTH));
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            result = result == null ? posting : intersect(result, posting);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scores an entry against all terms; returns 0 if any term does not match.
+     */
+    private int score(Entry entry, String[] terms) {
+        int total = 0;
+        for (String term : terms) {
+            int best = Math.max(
+                    match(entry.title, entry.titleTokens, term, TITLE_EXACT, TITLE_PREFIX, TITLE_SUBSTRING),
+                    match(entry.author, entry.authorTokens, term, AUTHOR_EXACT, AUTHOR_PREFIX, AUTHOR_SUBSTRING));
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private static int match(String text, String[] tokens, String term, int exact, int prefix, int substring) {
+        int best = 0;
+        for (String token : tokens) {
+            if (token.equals(term)) {
+                return exact;
+            }
+            if (token.startsWith(term)) {
+                best = prefix;
+            }
+        }
+        if (best == 0 && text.contains(term)) {
+            best = substring;
+        }
+        return best;
+    }
+
+    // Merges two id-ordered posting lists, keeping entries present in both
+    private static List<Entry> intersect(List<Entry> a, List<Entry> b) {
+        List<Entry> result = new ArrayList<>(Math.min(a.size(), b.size()));
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int cmp = Integer.compare(a.get(i).id, b.get(j).id);
+            if (cmp == 0) {
+                result.add(a.get(i));
+                i++;
+                j++;
+            } else if (cmp < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Adds every substring of one to GRAM_LENGTH characters of each token
+    private static void collect(String[] tokens, Set<String> grams) {
+        for (String token : tokens) {
+            for (int i = 0; i < token.length(); i++) {
+                for (int length = 1; length <= GRAM_LENGTH && i + length <= token.length(); length++) {
+                    grams.add(token.substring(i, i + length));
+                }
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Splits on anything that is not a letter or digit
+    private static String[] tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * An indexed book with its pre-normalized title and author.
+     */
+    private static final class Entry {
+        private final int id;
+        private final Book book;
+        private final String title;
+        private final String author;
+        private final String[] titleTokens;
+        private final String[] authorTokens;
+
+        private Entry(int id, Book book, String title, String author, String[] titleTokens, String[] authorTokens) {
+            this.id = id;
+            this.book = book;
+            this.title = title;
+            this.author = author;
+            this.titleTokens = titleTokens;
+            this.authorTokens = authorTokens;
+        }
+    }
+}
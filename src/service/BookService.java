@@ -1,12 +1,23 @@
 package service;
 
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
 import model.Book;
+import model.enums.Status;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Manages all book-related operations within the library.
- * Supports adding, searching, displaying, checking out, and returning books.
+ * Supports adding, searching and listing books. Methods return their results
+ * instead of printing, so callers decide how (and whether) to render them.
  */
 
 public class BookService implements Library {
@@ -14,7 +25,47 @@ public class BookService implements Library {
     private final List<Book> books = new ArrayList<>();
 
     // A set to store normalized ISBNs for fast uniqueness check
-    private final Set<String> isbnSet = new HashSet<>();
+    private final Set<String> isbnSet = ConcurrentHashMap.newKeySet();
+
+    // Primary index from normalized ISBN to book for constant-time, lock-free lookups
+    private final Map<String, Book> booksByIsbn = new ConcurrentHashMap<>();
+
+    // Ordered indexes used for keyset-paginated listings
+    private final NavigableMap<String, Book> booksByIsbnOrder = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Book> booksByTitleOrder = new ConcurrentSkipListMap<>();
+
+    // Inverted index over titles and authors for keyword search
+    private final BookSearchIndex searchIndex = new BookSearchIndex();
+
+    // Notified after each successful mutation
+    private volatile LibraryEventListener listener = LibraryEventListener.NONE;
+
+    // Held from each mutation until its listener has been notified
+    private volatile MutationGate gate = MutationGate.NONE;
+
+    // Hot-path metrics, resolved once so recording does not look anything up
+    private final LatencyHistogram isbnLookupLatency;
+    private final LongAdder isbnHits;
+    private final LongAdder isbnMisses;
+    private final LatencyHistogram titleSearchLatency;
+    private final LongAdder titleSearchEmpty;
+
+    public BookService() {
+        this(new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics Registry receiving lookup counters and latency histograms.
+     */
+    public BookService(MetricsRegistry metrics) {
+        isbnLookupLatency = metrics.histogram("book.findByIsbn.latency");
+        isbnHits = metrics.counter("book.findByIsbn.hits");
+        isbnMisses = metrics.counter("book.findByIsbn.misses");
+        metrics.ratio("book.findByIsbn.hitRatio", isbnHits, isbnMisses);
+        titleSearchLatency = metrics.histogram("book.findByTitle.latency");
+        titleSearchEmpty = metrics.counter("book.findByTitle.empty");
+        metrics.gauge("book.count", booksByIsbn::size);
+    }
 
     /**
      * Adds a new book to the library collection.
@@ -22,11 +73,190 @@ public class BookService implements Library {
      * @param title  Title of the book
      * @param author Author of the book
      * @param isbn   ISBN of the book (should be validated before)
+     * @return The added book
+     */
+    @Override
+    public Book create(String title, String author, String isbn) {
+        return create(title, author, isbn, 1);
+    }
+
+    /**
+     * Adds a new book with the given number of physical copies to the library collection.
+     *
+     * @param title  Title of the book
+     * @param author Author of the book
+     * @param isbn   ISBN of the book (should be validated before)
+     * @param copies Number of copies, at least 1
+     * @return The added book
+     */
+    @Override
+    public Book create(String title, String author, String isbn, int copies) {
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            // The listener is told before the book is indexed, outside the monitor, so
+            // nothing can act on the book before its creation has been published
+            Book book = new Book(title, author, isbn, copies);
+            listener.bookCreated(book);
+            synchronized (this) {
+                index(book);
+            }
+            return book;
+        } finally {
+            gate.exit();
+        }
+    }
+
+    /**
+     * Adds physical copies to an existing book.
+     *
+     * @param isbn   ISBN of the book
+     * @param copies Number of copies to add, at least 1
+     * @return The updated book, or null if no book has this ISBN
+     */
+    @Override
+    public Book addCopies(String isbn, int copies) {
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            Book book = findBookByIsbn(isbn);
+            if (book != null) {
+                book.addCopies(copies);
+                listener.copiesAdded(book, copies);
+            }
+            return book;
+        } finally {
+            gate.exit();
+        }
+    }
+
+    /**
+     * Re-adds a previously persisted book without notifying the listener.
+     * Used during recovery.
+     *
+     * @param title  Title of the book
+     * @param author Author of the book
+     * @param isbn   ISBN of the book
+     * @param copies Persisted number of copies; open loans are restored separately
+     * @return The restored book
      */
-    public void create(String title, String author, String isbn) {
-        Book book = new Book(title, author, isbn);
+    @Override
+    public synchronized Book restore(String title, String author, String isbn, int copies) {
+        Book book = new Book(title, author, isbn, copies);
+        isbnSet.add(normalizeIsbn(isbn));
+        index(book);
+        return book;
+    }
+
+    @Override
+    public void setEventListener(LibraryEventListener listener) {
+        this.listener = listener == null ? LibraryEventListener.NONE : listener;
+    }
+
+    @Override
+    public void setMutationGate(MutationGate gate) {
+        this.gate = gate == null ? MutationGate.NONE : gate;
+    }
+
+    // Adds a book to the list and all lookup indexes
+    private void index(Book book) {
+        String isbnKey = normalizeIsbn(book.getIsbn());
         books.add(book);
-        System.out.println("Book added successfully!");
+        booksByIsbn.put(isbnKey, book);
+        booksByIsbnOrder.put(isbnKey, book);
+        booksByTitleOrder.put(book.getTitle().toLowerCase(Locale.ROOT) + '\u0000' + isbnKey, book);
+        searchIndex.add(book);
+    }
+
+    /**
+     * Adds many books in one pass.
+     * Each record is {title, author, isbn} with an optional fourth column holding the number of copies. ISBNs are validated in parallel, then
+     * deduplicated against the catalog and the batch itself; valid books are indexed at the end.
+     *
+     * @param records Book records to import.
+     * @return Number of imported books and the rejected rows with reasons.
+     */
+    public ImportResult bulkCreate(Stream<String[]> records) {
+        List<String[]> rows = records.toList();
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            return bulkCreate(rows);
+        } finally {
+            gate.exit();
+        }
+    }
+
+    private ImportResult bulkCreate(List<String[]> rows) {
+        ImportResult result = new ImportResult();
+
+        // Validate in parallel; a null entry marks an invalid row
+        String[] normalized = new String[rows.size()];
+        IntStream.range(0, rows.size()).parallel().forEach(i -> {
+            String[] row = rows.get(i);
+            long packed = row.length >= 3 ? ISBNValidator.pack(row[2]) : ISBNValidator.INVALID;
+            if (packed != ISBNValidator.INVALID) {
+                normalized[i] = ISBNValidator.unpack(packed);
+            }
+        });
+
+        List<Book> added = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            if (row.length < 3) {
+                result.addError(i + 1, "Expected title, author and ISBN");
+            } else if (normalized[i] == null) {
+                result.addError(i + 1, "Invalid ISBN format: " + row[2]);
+            } else if (!isbnSet.add(normalized[i])) {
+                result.addError(i + 1, "ISBN already registered: " + row[2]);
+            } else {
+                int copies = parseCopies(row);
+                if (copies < 1) {
+                    isbnSet.remove(normalized[i]);
+                    result.addError(i + 1, "Invalid number of copies: " + row[3]);
+                } else {
+                    added.add(new Book(row[0].trim(), row[1].trim(), row[2].trim(), copies));
+                }
+            }
+        }
+
+        // Publish the batch, then build indexes once for all of it
+        for (Book book : added) {
+            listener.bookCreated(book);
+        }
+        synchronized (this) {
+            for (Book book : added) {
+                index(book);
+            }
+        }
+        result.setImported(added.size());
+        return result;
+    }
+
+    // Reads the optional copies column; returns 0 if it is present but not a positive number
+    private static int parseCopies(String[] row) {
+        if (row.length < 4 || row[3].isBlank()) {
+            return 1;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(row[3].trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Imports books from a CSV or TSV file with the columns title, author, isbn and optionally copies.
+     *
+     * @param path       File to import.
+     * @param skipHeader If true, the first line is treated as a header.
+     * @return Number of imported books and the rejected rows with reasons.
+     * @throws IOException If the file cannot be read.
+     */
+    public ImportResult importFile(Path path, boolean skipHeader) throws IOException {
+        try (Stream<String[]> records = DelimitedRecords.read(path, skipHeader)) {
+            return bulkCreate(records);
+        }
     }
 
     /**
@@ -40,76 +270,152 @@ public class BookService implements Library {
     }
 
     /**
-     * Displays all books in the library.
-     * Prints a message if no books are available.
+     * Returns all books in the library in insertion order.
+     *
+     * @return Unmodifiable copy of the book list; empty if there are no books
      */
-    public void list() {
-        if (books.isEmpty()) {
-            System.out.println("No books are currently available in the library.");
-            return;
-        }
+    @Override
+    public synchronized List<Book> list() {
+        return List.copyOf(books);
+    }
 
-        for (Book book : books) {
-            System.out.println(book);
-        }
+    // Number of books, without copying the list
+    synchronized int size() {
+        return books.size();
     }
 
     /**
-     * Searches for books with titles that contain the specified keyword.
+     * Returns one page of books in the given order, walking the ordered index lazily
+     * from the cursor so memory use is bounded by the page size.
      *
-     * @param title Partial or full title to search for (case-insensitive)
+     * @param sort     Sort order.
+     * @param status   Only books with this status are returned; null for all books.
+     * @param cursor   Cursor from the previous page, or null for the first page.
+     * @param pageSize Maximum number of books on the page.
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed
      */
-    public void findBookByTitle(String title) {
-        boolean found = false;
+    @Override
+    public Page<Book> list(BookSort sort, Status status, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        String after = Page.decodeCursor(cursor);
+
+        if (sort == BookSort.STATUS) {
+            return listByStatus(status, after, pageSize);
+        }
+
+        NavigableMap<String, Book> order = sort == BookSort.TITLE ? booksByTitleOrder : booksByIsbnOrder;
+        Iterable<Map.Entry<String, Book>> entries = after == null ? order.entrySet() : order.tailMap(after, false).entrySet();
+
+        List<Book> items = new ArrayList<>(pageSize);
+        String lastKey = null;
+        for (Map.Entry<String, Book> entry : entries) {
+            if (status != null && entry.getValue().getStatus() != status) continue;
+            if (items.size() == pageSize) {
+                return new Page<>(items, Page.encodeCursor(lastKey));
+            }
+            items.add(entry.getValue());
+            lastKey = entry.getKey();
+        }
+        return new Page<>(items, null);
+    }
 
-        for (Book book : books) {
-            if (book.getTitle().toLowerCase().contains(title.toLowerCase())) {
-                System.out.println(book);
-                found = true;
+    /**
+     * Lists books grouped by status in enum order, each group sorted by ISBN.
+     * The cursor key is "&lt;status ordinal&gt;:&lt;isbn&gt;".
+     */
+    private Page<Book> listByStatus(Status status, String after, int pageSize) {
+        int startPhase = 0;
+        String afterIsbn = null;
+        if (after != null) {
+            int separator = after.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
             }
+            startPhase = Page.decodeStatusPhase(after.substring(0, separator));
+            afterIsbn = after.substring(separator + 1);
         }
 
-        if (!found) {
-            System.out.println("No books found containing the title: " + title);
+        List<Book> items = new ArrayList<>(pageSize);
+        String lastKey = null;
+        Status[] phases = Status.values();
+        for (int phase = startPhase; phase < phases.length; phase++) {
+            if (status != null && phases[phase] != status) continue;
+
+            Iterable<Map.Entry<String, Book>> entries = phase == startPhase && afterIsbn != null
+                    ? booksByIsbnOrder.tailMap(afterIsbn, false).entrySet()
+                    : booksByIsbnOrder.entrySet();
+            for (Map.Entry<String, Book> entry : entries) {
+                if (entry.getValue().getStatus() != phases[phase]) continue;
+                if (items.size() == pageSize) {
+                    return new Page<>(items, Page.encodeCursor(lastKey));
+                }
+                items.add(entry.getValue());
+                lastKey = phase + ":" + entry.getKey();
+            }
         }
+        return new Page<>(items, null);
     }
 
     /**
-     * Finds a book by exact ISBN match.
-     * Optionally prints the book details.
+     * Searches for books whose title or author contains every keyword of the query.
      *
-     * @param isbn  ISBN to search for.
-     * @param print If true, prints the found book.
-     * @return The found book or null if none matched.
+     * @param title One or more keywords to search for (case-insensitive)
+     * @return Matching books, best match first; empty if none matched
      */
     @Override
-    public Book findBookByIsbn(String isbn, boolean print) {
-        isbn = normalizeIsbn(isbn);
-        Book foundBook = null;
-
-        for (Book book : books) {
-            if (normalizeIsbn(book.getIsbn()).equals(isbn)) {
-                foundBook = book;
-                if (print) {
-                    System.out.println(book);
-                }
-                break;
-            }
+    public List<Book> findBookByTitle(String title) {
+        long start = System.nanoTime();
+        List<Book> result = searchIndex.search(title);
+        titleSearchLatency.record(System.nanoTime() - start);
+        if (result.isEmpty()) {
+            titleSearchEmpty.increment();
         }
-        if (foundBook == null) {
-            System.out.println("No book found with the ISBN: " + isbn);
+        return result;
+    }
+
+    // Title search with match scores, for callers merging the results of several catalogs
+    List<BookSearchIndex.Match> rankByTitle(String title) {
+        long start = System.nanoTime();
+        List<BookSearchIndex.Match> result = searchIndex.rank(title);
+        titleSearchLatency.record(System.nanoTime() - start);
+        if (result.isEmpty()) {
+            titleSearchEmpty.increment();
         }
-        return foundBook;
+        return result;
     }
 
     /**
-     * Normalizes ISBN by removing hyphens and spaces, and converting to uppercase.
+     * Finds a book by exact ISBN match using the ISBN index.
+     *
+     * @param isbn ISBN to search for.
+     * @return The found book or null if none matched.
+     */
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        long start = System.nanoTime();
+        Book book = booksByIsbn.get(normalizeIsbn(isbn));
+        isbnLookupLatency.record(System.nanoTime() - start);
+        (book != null ? isbnHits : isbnMisses).increment();
+        return book;
+    }
+
+    /**
+     * Normalizes ISBN to its canonical ISBN-13 form, so ISBN-10 and ISBN-13 spellings
+     * of the same book share one key. Input that is not a valid ISBN falls back to
+     * removing hyphens and spaces and converting to uppercase.
      *
      * @param isbn Raw ISBN string.
      * @return Normalized ISBN string.
      */
     public String normalizeIsbn(String isbn) {
         if (isbn == null) return "";
+        long packed = ISBNValidator.pack(isbn);
+        if (packed != ISBNValidator.INVALID) {
+            return ISBNValidator.unpack(packed);
+        }
         return isbn.replace("-", "").replace(" ", "").toUpperCase();
     }
 
@@ -0,0 +1,33 @@
+package service;
+
+import model.Book;
+
+import java.util.Locale;
+
+/**
+ * Sort orders supported by paginated book listings.
+ */
+public enum BookSort {
+    // Case-insensitive title, ties broken by ISBN
+    TITLE,
+    // Canonical ISBN-13
+    ISBN,
+    // Available books first, then checked-out books, each group by ISBN
+    STATUS;
+
+    /**
+     * Returns the key a book is ordered by, which is also what listing cursors encode.
+     * Every catalog engine uses the same layout, so a cursor can be passed between them.
+     *
+     * @param book A book with a valid ISBN.
+     * @return The book's key in this order.
+     */
+    String cursorKey(Book book) {
+        String isbn = ISBNValidator.toIsbn13(book.getIsbn());
+        return switch (this) {
+            case TITLE -> book.getTitle().toLowerCase(Locale.ROOT) + '\u0000' + isbn;
+            case ISBN -> isbn;
+            case STATUS -> book.getStatus().ordinal() + ":" + isbn;
+        };
+    }
+}
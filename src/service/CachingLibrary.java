@@ -0,0 +1,144 @@
+package service;
+
+import metrics.MetricsRegistry;
+import model.Book;
+import model.enums.Status;
+
+import java.util.List;
+
+/**
+ * Read-through cache in front of another catalog, for engines where a lookup is not a plain
+ * heap read (such as {@link MappedLibrary}, which decodes titles and authors from the mapped
+ * file on every lookup). ISBN lookups are served from a {@link LookupCache}; searches and
+ * listings go straight to the underlying catalog.
+ * <p>
+ * Cached books are the underlying engine's own book objects or views, whose copy counts are
+ * live, so check-outs and returns need no invalidation. Mutations that can replace a book
+ * invalidate its entry. Lookups of unknown ISBNs are not cached.
+ */
+public class CachingLibrary implements Library {
+
+    // Rough fixed cost of a cached book besides its strings: node, key, book object and headers
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final Library delegate;
+    private final LookupCache<Long, Book> byIsbn;
+
+    private CachingLibrary(Library delegate, LookupCache<Long, Book> byIsbn) {
+        this.delegate = delegate;
+        this.byIsbn = byIsbn;
+    }
+
+    /**
+     * Caches up to the given number of books.
+     *
+     * @param delegate   Catalog to read through to.
+     * @param maxEntries Maximum number of cached books.
+     * @param metrics    Registry receiving the cache.books.* metrics.
+     * @return The caching catalog.
+     */
+    public static CachingLibrary withMaxEntries(Library delegate, int maxEntries, MetricsRegistry metrics) {
+        return new CachingLibrary(delegate,
+                new LookupCache<>("cache.books", maxEntries, maxEntries, book -> 1, metrics));
+    }
+
+    /**
+     * Caches books up to an approximate heap budget, estimated from string lengths.
+     *
+     * @param delegate Catalog to read through to.
+     * @param maxBytes Approximate maximum heap used by cached books.
+     * @param metrics  Registry receiving the cache.books.* metrics.
+     * @return The caching catalog.
+     */
+    public static CachingLibrary withMaxBytes(Library delegate, long maxBytes, MetricsRegistry metrics) {
+        int estimatedEntries = (int) Math.min(Integer.MAX_VALUE, maxBytes / (ENTRY_OVERHEAD_BYTES + 64));
+        return new CachingLibrary(delegate,
+                new LookupCache<>("cache.books", maxBytes, estimatedEntries, CachingLibrary::weigh, metrics));
+    }
+
+    /**
+     * @return The catalog this cache reads through to.
+     */
+    public Library getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Book create(String title, String author, String isbn) {
+        Book book = delegate.create(title, author, isbn);
+        invalidate(isbn);
+        return book;
+    }
+
+    @Override
+    public Book create(String title, String author, String isbn, int copies) {
+        Book book = delegate.create(title, author, isbn, copies);
+        invalidate(isbn);
+        return book;
+    }
+
+    @Override
+    public Book addCopies(String isbn, int copies) {
+        return delegate.addCopies(isbn, copies);
+    }
+
+    @Override
+    public List<Book> list() {
+        return delegate.list();
+    }
+
+    @Override
+    public Page<Book> list(BookSort sort, Status status, String cursor, int pageSize) {
+        return delegate.list(sort, status, cursor, pageSize);
+    }
+
+    @Override
+    public List<Book> findBookByTitle(String title) {
+        return delegate.findBookByTitle(title);
+    }
+
+    @Override
+    public boolean addIsbn(String isbn) {
+        boolean added = delegate.addIsbn(isbn);
+        invalidate(isbn);
+        return added;
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        long packed = ISBNValidator.pack(isbn);
+        if (packed == ISBNValidator.INVALID) {
+            return delegate.findBookByIsbn(isbn);
+        }
+        // ISBN-10 and ISBN-13 spellings of a book share one entry
+        return byIsbn.get(packed, key -> delegate.findBookByIsbn(isbn));
+    }
+
+    @Override
+    public Book restore(String title, String author, String isbn, int copies) {
+        Book book = delegate.restore(title, author, isbn, copies);
+        invalidate(isbn);
+        return book;
+    }
+
+    @Override
+    public void setEventListener(LibraryEventListener listener) {
+        delegate.setEventListener(listener);
+    }
+
+    @Override
+    public void setMutationGate(MutationGate gate) {
+        delegate.setMutationGate(gate);
+    }
+
+    private void invalidate(String isbn) {
+        long packed = ISBNValidator.pack(isbn);
+        if (packed != ISBNValidator.INVALID) {
+            byIsbn.invalidate(packed);
+        }
+    }
+
+    private static int weigh(Book book) {
+        return ENTRY_OVERHEAD_BYTES + 2 * (book.getTitle().length() + book.getAuthor().length() + book.getIsbn().length());
+    }
+}
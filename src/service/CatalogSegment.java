@@ -0,0 +1,410 @@
+package service;
+
+import model.Book;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Read-only catalog segment stored in a memory-mapped file.
+ * The file holds fixed-width book records sorted by ISBN, a title-order permutation,
+ * an open-addressing ISBN hash table and a heap of UTF-8 strings. Opening a segment only
+ * maps the file; lookups and scans read the mapped pages directly, so the catalog lives in
+ * the OS page cache instead of the JVM heap.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header   magic, version, record count, hash capacity, offsets of the sections below, segment id,
+ *          author count
+ * records  per book: isbn long, title offset int, title length int, author offset int, author length int,
+ *          copies int, author number int (32 bytes); authors are numbered from 0 in order of appearance
+ * order    record ids sorted by lowercase title, then ISBN (4 bytes each)
+ * hash     per slot: isbn long, record id int (12 bytes); empty slots hold isbn -1
+ *          (isbn 0 in version 2, which could not store the all-zero ISBN)
+ * heap     UTF-8 titles and (deduplicated) authors
+ * </pre>
+ * A single mapping is limited to 2 GB, which fits several tens of millions of books.
+ * <p>
+ * Every written segment gets a random non-zero id, which snapshots record to refer to the segment's
+ * records by number; {@link #fileName(int)} names the file after it.
+ */
+public final class CatalogSegment {
+
+    private static final int MAGIC = 0x4C4D5343; // "LMSC"
+    private static final int VERSION = 3;
+
+    // Version 2 marked empty hash slots with isbn 0
+    private static final int VERSION_ZERO_EMPTY = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = 32;
+    private static final int SLOT_BYTES = 12;
+    private static final long EMPTY = ISBNValidator.INVALID;
+
+    private final ByteBuffer buffer;
+
+    // Isbn of an empty hash slot in this segment's version
+    private final long empty;
+    private final int id;
+    private final int size;
+    private final int authorCount;
+    private final int hashCapacity;
+    private final int recordsOffset;
+    private final int orderOffset;
+    private final int hashOffset;
+    private final int heapOffset;
+
+    private CatalogSegment(ByteBuffer buffer, long empty, int id, int size, int authorCount, int hashCapacity,
+                           int recordsOffset, int orderOffset, int hashOffset, int heapOffset) {
+        this.buffer = buffer;
+        this.empty = empty;
+        this.id = id;
+        this.size = size;
+        this.authorCount = authorCount;
+        this.hashCapacity = hashCapacity;
+        this.recordsOffset = recordsOffset;
+        this.orderOffset = orderOffset;
+        this.hashOffset = hashOffset;
+        this.heapOffset = heapOffset;
+    }
+
+    /**
+     * Returns a segment without any books, used when no segment file exists yet.
+     *
+     * @return Empty segment.
+     */
+    public static CatalogSegment empty() {
+        return new CatalogSegment(ByteBuffer.allocate(0), EMPTY, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Maps a segment file.
+     *
+     * @param path Segment file.
+     * @return The mapped segment.
+     * @throws IOException If the file cannot be mapped or is not a catalog segment.
+     */
+    public static CatalogSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported catalog segment: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = buffer.getInt(4);
+            if (buffer.getInt(0) != MAGIC || version < VERSION_ZERO_EMPTY || version > VERSION) {
+                throw new IOException("Unsupported catalog segment: " + path);
+            }
+            long empty = version == VERSION_ZERO_EMPTY ? 0 : EMPTY;
+            return new CatalogSegment(buffer, empty, buffer.getInt(56), buffer.getInt(8), buffer.getInt(60), buffer.getInt(12),
+                    (int) buffer.getLong(16), (int) buffer.getLong(24), (int) buffer.getLong(32), (int) buffer.getLong(40));
+        }
+    }
+
+    /**
+     * Opens the segment with the given id in a directory.
+     *
+     * @param directory Directory holding the segment files.
+     * @param id        Segment id.
+     * @return The mapped segment.
+     * @throws IOException If the file cannot be mapped or holds another segment.
+     */
+    public static CatalogSegment open(Path directory, int id) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        CatalogSegment segment = open(path);
+        if (segment.id != id) {
+            throw new IOException("Catalog segment " + path + " has id " + Integer.toHexString(segment.id));
+        }
+        return segment;
+    }
+
+    /**
+     * @param id Segment id.
+     * @return Name of the file a segment with that id is written to.
+     */
+    public static String fileName(int id) {
+        return "catalog-" + Integer.toHexString(id) + ".segment";
+    }
+
+    /**
+     * Writes this segment's books with adjusted copy counts plus further books as a new segment
+     * with a fresh id, named by {@link #fileName(int)}.
+     *
+     * @param directory   Directory for the new segment file.
+     * @param addedCopies Copies to add to each of this segment's records, indexed by record id.
+     * @param books       Books to add.
+     * @return Id of the new segment.
+     * @throws IOException If the file cannot be written or the segment would exceed 2 GB.
+     */
+    public int writeMerged(Path directory, int[] addedCopies, List<Book> books) throws IOException {
+        List<Book> merged = new ArrayList<>(size + books.size());
+        for (int record = 0; record < size; record++) {
+            merged.add(new Book(title(record), author(record), ISBNValidator.unpack(isbn(record)),
+                    copies(record) + addedCopies[record]));
+        }
+        merged.addAll(books);
+        int newId;
+        do {
+            newId = ThreadLocalRandom.current().nextInt();
+        } while (newId == 0 || newId == id);
+        write(directory.resolve(fileName(newId)), merged, newId);
+        return newId;
+    }
+
+    /**
+     * Writes the given books as a new segment, replacing the target atomically.
+     * Books without a valid ISBN are skipped; for duplicate ISBNs the last book wins.
+     *
+     * @param path      Segment file.
+     * @param books     Books to store.
+     * @param segmentId Segment id; 0 if snapshots must not refer to the segment.
+     * @throws IOException If the file cannot be written or the segment would exceed 2 GB.
+     */
+    public static void write(Path path, List<Book> books, int segmentId) throws IOException {
+        Map<Long, Book> byIsbn = new TreeMap<>();
+        for (Book book : books) {
+            long packed = ISBNValidator.pack(book.getIsbn());
+            if (packed != ISBNValidator.INVALID) {
+                byIsbn.put(packed, book);
+            }
+        }
+        int count = byIsbn.size();
+        long[] isbns = new long[count];
+        Book[] sorted = new Book[count];
+        int i = 0;
+        for (Map.Entry<Long, Book> entry : byIsbn.entrySet()) {
+            isbns[i] = entry.getKey();
+            sorted[i++] = entry.getValue();
+        }
+
+        // String heap: titles in record order, each distinct author once
+        ByteArrayOutputStream heap = new ByteArrayOutputStream();
+        int[] titleOffsets = new int[count];
+        int[] titleLengths = new int[count];
+        int[] authorOffsets = new int[count];
+        int[] authorLengths = new int[count];
+        int[] authorNumbers = new int[count];
+        Map<String, int[]> authors = new HashMap<>();
+        for (int id = 0; id < count; id++) {
+            byte[] title = nonNull(sorted[id].getTitle()).getBytes(StandardCharsets.UTF_8);
+            titleOffsets[id] = heap.size();
+            titleLengths[id] = title.length;
+            heap.write(title);
+
+            int[] author = authors.computeIfAbsent(nonNull(sorted[id].getAuthor()), name -> {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                int[] location = {heap.size(), bytes.length, authors.size()};
+                heap.writeBytes(bytes);
+                return location;
+            });
+            authorOffsets[id] = author[0];
+            authorLengths[id] = author[1];
+            authorNumbers[id] = author[2];
+        }
+
+        Integer[] order = new Integer[count];
+        String[] titleKeys = new String[count];
+        for (int id = 0; id < count; id++) {
+            order[id] = id;
+            titleKeys[id] = nonNull(sorted[id].getTitle()).toLowerCase(Locale.ROOT) + '\u0000' + ISBNValidator.unpack(isbns[id]);
+        }
+        Arrays.sort(order, Comparator.comparing(id -> titleKeys[id]));
+
+        int hashCapacity = Integer.highestOneBit(Math.max(16, count * 2 - 1)) << 1;
+        long[] slotIsbns = new long[hashCapacity];
+        Arrays.fill(slotIsbns, EMPTY);
+        int[] slotIds = new int[hashCapacity];
+        for (int id = 0; id < count; id++) {
+            int slot = slot(isbns[id], hashCapacity - 1);
+            while (slotIsbns[slot] != EMPTY) {
+                slot = (slot + 1) & (hashCapacity - 1);
+            }
+            slotIsbns[slot] = isbns[id];
+            slotIds[slot] = id;
+        }
+
+        long recordsOffset = HEADER_BYTES;
+        long orderOffset = recordsOffset + (long) count * RECORD_BYTES;
+        long hashOffset = orderOffset + (long) count * 4;
+        long heapOffset = hashOffset + (long) hashCapacity * SLOT_BYTES;
+        if (heapOffset + heap.size() > Integer.MAX_VALUE) {
+            throw new IOException("Catalog segment would exceed 2 GB");
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(hashCapacity);
+            out.writeLong(recordsOffset);
+            out.writeLong(orderOffset);
+            out.writeLong(hashOffset);
+            out.writeLong(heapOffset);
+            out.writeLong(heap.size());
+            out.writeInt(segmentId);
+            out.writeInt(authors.size());
+
+            for (int id = 0; id < count; id++) {
+                out.writeLong(isbns[id]);
+                out.writeInt(titleOffsets[id]);
+                out.writeInt(titleLengths[id]);
+                out.writeInt(authorOffsets[id]);
+                out.writeInt(authorLengths[id]);
+                out.writeInt(sorted[id].getCopies());
+                out.writeInt(authorNumbers[id]);
+            }
+            for (Integer id : order) {
+                out.writeInt(id);
+            }
+            for (int slot = 0; slot < hashCapacity; slot++) {
+                out.writeLong(slotIsbns[slot]);
+                out.writeInt(slotIds[slot]);
+            }
+            heap.writeTo(out);
+
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return Segment id, or 0 for a segment that snapshots must not refer to.
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return Number of books in the segment.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Number of distinct authors; {@link #authorKey(int)} is below this.
+     */
+    int authorCount() {
+        return authorCount;
+    }
+
+    /**
+     * Looks up a packed ISBN in the hash table.
+     *
+     * @param isbn Packed ISBN-13.
+     * @return The record id, or -1 if the ISBN is not in the segment.
+     */
+    int find(long isbn) {
+        if (hashCapacity == 0 || isbn == empty) return -1;
+        int mask = hashCapacity - 1;
+        for (int slot = slot(isbn, mask); ; slot = (slot + 1) & mask) {
+            int position = hashOffset + slot * SLOT_BYTES;
+            long key = buffer.getLong(position);
+            if (key == isbn) return buffer.getInt(position + 8);
+            if (key == empty) return -1;
+        }
+    }
+
+    /**
+     * Finds the first record whose ISBN is greater than the given one.
+     * Records are sorted by ISBN, so this is a binary search over the record section.
+     *
+     * @param isbn Packed ISBN-13.
+     * @return Record id, or {@link #size()} if there is none.
+     */
+    int firstAfter(long isbn) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isbn(mid) <= isbn) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    long isbn(int id) {
+        return buffer.getLong(recordsOffset + id * RECORD_BYTES);
+    }
+
+    int copies(int id) {
+        return buffer.getInt(recordsOffset + id * RECORD_BYTES + 24);
+    }
+
+    String title(int id) {
+        int record = recordsOffset + id * RECORD_BYTES;
+        return string(buffer.getInt(record + 8), buffer.getInt(record + 12));
+    }
+
+    String author(int id) {
+        int record = recordsOffset + id * RECORD_BYTES;
+        return string(buffer.getInt(record + 16), buffer.getInt(record + 20));
+    }
+
+    /**
+     * Numbers the record's author; records by the same author share the number.
+     */
+    int authorKey(int id) {
+        return buffer.getInt(recordsOffset + id * RECORD_BYTES + 28);
+    }
+
+    /**
+     * @param position Position in title order.
+     * @return Record id at that position.
+     */
+    int titleOrder(int position) {
+        return buffer.getInt(orderOffset + position * 4);
+    }
+
+    /**
+     * Substring test on the stored title bytes with ASCII case folding; keywords with
+     * other characters fall back to decoding and lowercasing the title.
+     *
+     * @param id      Record id.
+     * @param keyword Lowercase keyword.
+     * @param needle  UTF-8 bytes of the keyword.
+     * @return true if the title contains the keyword.
+     */
+    boolean titleContains(int id, String keyword, byte[] needle) {
+        if (needle.length != keyword.length()) {
+            return title(id).toLowerCase(Locale.ROOT).contains(keyword);
+        }
+        int record = recordsOffset + id * RECORD_BYTES;
+        int start = heapOffset + buffer.getInt(record + 8);
+        int last = start + buffer.getInt(record + 12) - needle.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                byte b = buffer.get(i + j);
+                if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+                if (b != needle[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(heapOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static int slot(long isbn, int mask) {
+        long h = isbn * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,671 @@
+package service;
+
+import model.Book;
+import model.enums.Status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Catalog storage engine that keeps books in primitive columns instead of one object per book.
+ * ISBNs are stored packed into longs, authors are dictionary-encoded, titles are UTF-8 bytes in
+ * a shared per-chunk heap and availability is an int column plus a status bitset. {@link Book}
+ * objects are only materialized as views when a caller asks for one; a view reads and updates
+ * the copy counters in the columns, and two views of the same record are equal.
+ * <p>
+ * Records are append-only and grouped in fixed-size chunks, so growing the catalog never copies
+ * existing columns. Writers are synchronized; lookups and copy counters are lock-free.
+ * Unlike {@link BookService}, ISBNs are returned in their canonical 13-digit form and title
+ * search is a scan in catalog order rather than a ranked index lookup.
+ */
+public class ColumnarLibrary implements Library {
+
+    private static final int CHUNK_BITS = 13;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Search queries are matched as a bit mask, one bit per keyword
+    private static final int MAX_KEYWORDS = 64;
+
+    /**
+     * Columns for {@link #CHUNK_SIZE} consecutive records.
+     */
+    private static final class Chunk {
+        final long[] isbns = new long[CHUNK_SIZE];
+        final int[] authors = new int[CHUNK_SIZE];
+        // End offset of each title in titleBytes; a title starts where the previous one ends
+        final int[] titleEnds = new int[CHUNK_SIZE];
+        byte[] titleBytes = new byte[CHUNK_SIZE * 8];
+        final AtomicIntegerArray copies = new AtomicIntegerArray(CHUNK_SIZE);
+        final AtomicIntegerArray available = new AtomicIntegerArray(CHUNK_SIZE);
+        // One bit per record, set while at least one copy is on the shelf
+        final AtomicLongArray availableBits = new AtomicLongArray(CHUNK_SIZE / Long.SIZE);
+
+        int titleStart(int slot) {
+            return slot == 0 ? 0 : titleEnds[slot - 1];
+        }
+
+        boolean isAvailable(int slot) {
+            return (availableBits.get(slot >>> 6) & (1L << slot)) != 0;
+        }
+
+        // Brings the status bit in line with the counter; repeats if the counter crossed zero meanwhile
+        void syncStatus(int slot) {
+            boolean wanted;
+            do {
+                wanted = available.get(slot) > 0;
+                long bit = 1L << slot;
+                long word;
+                do {
+                    word = availableBits.get(slot >>> 6);
+                } while (!availableBits.compareAndSet(slot >>> 6, word, wanted ? word | bit : word & ~bit));
+            } while (wanted != available.get(slot) > 0);
+        }
+    }
+
+    // Chunks are only appended; the array is replaced when a chunk is added
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    // Number of published records; written after a record's columns are filled
+    private volatile int size;
+
+    // Number of records whose columns are filled; records in [size, reserved) are being
+    // announced to the listener and become visible in id order. Guarded by this.
+    private int reserved;
+
+    // Author dictionary; names are published together with the records that use them
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private String[] authorNames = new String[64];
+
+    // Packed ISBN-13 to record id, also holding reservations made by addIsbn
+    private final IsbnHashIndex isbnIndex = new IsbnHashIndex();
+
+    // Record ids sorted by ISBN and by title; extended lazily for records added since the last listing
+    private int[] isbnOrder = new int[0];
+    private int[] titleOrder = new int[0];
+
+    // Notified after each successful mutation
+    private volatile LibraryEventListener listener = LibraryEventListener.NONE;
+
+    // Held from each mutation until its listener has been notified
+    private volatile MutationGate gate = MutationGate.NONE;
+
+    /**
+     * Adds a new book with one copy.
+     *
+     * @param title  Title of the book
+     * @param author Author of the book
+     * @param isbn   Valid ISBN-10 or ISBN-13
+     * @return A view of the added book
+     */
+    @Override
+    public Book create(String title, String author, String isbn) {
+        return create(title, author, isbn, 1);
+    }
+
+    /**
+     * Adds a new book with the given number of copies.
+     *
+     * @param title  Title of the book
+     * @param author Author of the book
+     * @param isbn   Valid ISBN-10 or ISBN-13
+     * @param copies Number of copies, at least 1
+     * @return A view of the added book
+     * @throws IllegalArgumentException If the ISBN is not valid or copies is not positive
+     */
+    @Override
+    public Book create(String title, String author, String isbn, int copies) {
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            // The listener is told before the record is visible, outside the monitor, so
+            // nothing can act on the book before its creation has been published
+            Book book;
+            int id;
+            synchronized (this) {
+                id = append(title, author, isbn, copies);
+                book = record(id);
+            }
+            try {
+                listener.bookCreated(book);
+            } finally {
+                publishInOrder(id);
+            }
+            return book;
+        } finally {
+            gate.exit();
+        }
+    }
+
+    /**
+     * Re-adds a previously persisted book without notifying the listener.
+     *
+     * @param title  Title of the book
+     * @param author Author of the book
+     * @param isbn   ISBN of the book
+     * @param copies Persisted number of copies
+     * @return A view of the restored book
+     */
+    @Override
+    public synchronized Book restore(String title, String author, String isbn, int copies) {
+        int id = append(title, author, isbn, copies);
+        publish(id);
+        return view(id);
+    }
+
+    @Override
+    public Book addCopies(String isbn, int copies) {
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            Book book = findBookByIsbn(isbn);
+            if (book != null) {
+                book.addCopies(copies);
+                listener.copiesAdded(book, copies);
+            }
+            return book;
+        } finally {
+            gate.exit();
+        }
+    }
+
+    @Override
+    public synchronized void setEventListener(LibraryEventListener listener) {
+        this.listener = listener == null ? LibraryEventListener.NONE : listener;
+    }
+
+    @Override
+    public void setMutationGate(MutationGate gate) {
+        this.gate = gate == null ? MutationGate.NONE : gate;
+    }
+
+    /**
+     * Reserves an ISBN so it cannot be registered twice.
+     *
+     * @param isbn The ISBN to reserve (in any format)
+     * @return true if the ISBN is valid and was not registered before
+     */
+    @Override
+    public boolean addIsbn(String isbn) {
+        long packed = ISBNValidator.pack(isbn);
+        return packed != ISBNValidator.INVALID && isbnIndex.reserve(packed);
+    }
+
+    /**
+     * Finds a book by ISBN using the primitive hash index.
+     *
+     * @param isbn ISBN to search for.
+     * @return A view of the book, or null if none matched.
+     */
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        long packed = ISBNValidator.pack(isbn);
+        if (packed == ISBNValidator.INVALID) {
+            return null;
+        }
+        int id = isbnIndex.get(packed);
+        return id < 0 ? null : view(id);
+    }
+
+    /**
+     * Returns all books in insertion order. Views are materialized as elements are read.
+     *
+     * @return Unmodifiable list of the books present when this method was called
+     */
+    @Override
+    public List<Book> list() {
+        int count = size;
+        return new BookListView(count);
+    }
+
+    private final class BookListView extends AbstractList<Book> implements RandomAccess {
+        private final int count;
+
+        BookListView(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public Book get(int index) {
+            Objects.checkIndex(index, count);
+            return view(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * Searches for books whose title or author contains every keyword of the query.
+     * Authors are matched once per dictionary entry; titles are matched on their stored
+     * bytes, and only decoded for keywords with non-ASCII characters.
+     *
+     * @param title One or more keywords to search for
+     * @return Matching books in catalog order; empty if none matched
+     */
+    @Override
+    public List<Book> findBookByTitle(String title) {
+        List<Book> found = new ArrayList<>();
+        if (title == null || title.isBlank()) {
+            return found;
+        }
+        String[] keywords = title.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        int keywordCount = Math.min(keywords.length, MAX_KEYWORDS);
+        byte[][] needles = new byte[keywordCount][];
+        for (int k = 0; k < keywordCount; k++) {
+            needles[k] = keywords[k].getBytes(StandardCharsets.UTF_8);
+        }
+        long all = keywordCount == Long.SIZE ? -1L : (1L << keywordCount) - 1;
+
+        int count = size;
+        Chunk[] current = chunks;
+        String[] names = authorNames;
+        long[] authorMasks = new long[names.length];
+        boolean[] authorDone = new boolean[names.length];
+
+        for (int id = 0; id < count; id++) {
+            Chunk chunk = current[id >>> CHUNK_BITS];
+            int slot = id & CHUNK_MASK;
+            int author = chunk.authors[slot];
+            if (!authorDone[author]) {
+                authorMasks[author] = matchAuthor(names[author], keywords, keywordCount);
+                authorDone[author] = true;
+            }
+            long mask = authorMasks[author];
+            for (int k = 0; k < keywordCount && mask != all; k++) {
+                if ((mask & (1L << k)) == 0 && titleContains(chunk, slot, keywords[k], needles[k])) {
+                    mask |= 1L << k;
+                }
+            }
+            if (mask == all) {
+                found.add(view(id));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns one page of books in the given order. The sorted record orders are extended
+     * incrementally with the records added since the previous listing.
+     *
+     * @param sort     Sort order.
+     * @param status   Only books with this status are returned; null for all books.
+     * @param cursor   Cursor from the previous page, or null for the first page.
+     * @param pageSize Maximum number of books on the page.
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed
+     */
+    @Override
+    public Page<Book> list(BookSort sort, Status status, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        String after = Page.decodeCursor(cursor);
+
+        if (sort == BookSort.STATUS) {
+            return listByStatus(status, after, pageSize);
+        }
+
+        boolean byTitle = sort == BookSort.TITLE;
+        int[] order = byTitle ? titleOrder() : isbnOrder();
+        int from = after == null ? 0 : byTitle ? firstTitleAfter(order, after) : firstIsbnAfter(order, parseIsbn(after));
+
+        List<Book> items = new ArrayList<>(pageSize);
+        int last = -1;
+        for (int i = from; i < order.length; i++) {
+            int id = order[i];
+            if (status != null && statusOf(id) != status) continue;
+            if (items.size() == pageSize) {
+                return new Page<>(items, Page.encodeCursor(byTitle ? titleKey(last) : ISBNValidator.unpack(isbnOf(last))));
+            }
+            items.add(view(id));
+            last = id;
+        }
+        return new Page<>(items, null);
+    }
+
+    /**
+     * Lists books grouped by status in enum order, each group sorted by ISBN.
+     * The cursor key is "&lt;status ordinal&gt;:&lt;isbn&gt;".
+     */
+    private Page<Book> listByStatus(Status status, String after, int pageSize) {
+        int startPhase = 0;
+        long afterIsbn = ISBNValidator.INVALID;
+        if (after != null) {
+            int separator = after.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            startPhase = Page.decodeStatusPhase(after.substring(0, separator));
+            afterIsbn = parseIsbn(after.substring(separator + 1));
+        }
+
+        int[] order = isbnOrder();
+        List<Book> items = new ArrayList<>(pageSize);
+        int last = -1;
+        Status[] phases = Status.values();
+        for (int phase = startPhase; phase < phases.length; phase++) {
+            if (status != null && phases[phase] != status) continue;
+
+            int from = phase == startPhase && afterIsbn != ISBNValidator.INVALID ? firstIsbnAfter(order, afterIsbn) : 0;
+            for (int i = from; i < order.length; i++) {
+                int id = order[i];
+                if (statusOf(id) != phases[phase]) continue;
+                if (items.size() == pageSize) {
+                    return new Page<>(items, Page.encodeCursor(phase + ":" + ISBNValidator.unpack(isbnOf(last))));
+                }
+                items.add(view(id));
+                last = id;
+            }
+        }
+        return new Page<>(items, null);
+    }
+
+    // Writes a record into the columns and publishes it; called with the monitor held
+    private int append(String title, String author, String isbn, int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("A book must have at least one copy: " + copies);
+        }
+        long packed = ISBNValidator.pack(isbn);
+        if (packed == ISBNValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN: " + isbn);
+        }
+
+        int id = reserved;
+        Chunk[] current = chunks;
+        if ((id >>> CHUNK_BITS) == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = new Chunk();
+            chunks = current;
+        }
+        Chunk chunk = current[id >>> CHUNK_BITS];
+        int slot = id & CHUNK_MASK;
+
+        byte[] bytes = (title == null ? "" : title).getBytes(StandardCharsets.UTF_8);
+        int start = chunk.titleStart(slot);
+        if (start + bytes.length > chunk.titleBytes.length) {
+            chunk.titleBytes = Arrays.copyOf(chunk.titleBytes, Math.max(chunk.titleBytes.length * 2, start + bytes.length));
+        }
+        System.arraycopy(bytes, 0, chunk.titleBytes, start, bytes.length);
+        chunk.titleEnds[slot] = start + bytes.length;
+        chunk.isbns[slot] = packed;
+        chunk.authors[slot] = authorId(author == null ? "" : author);
+        chunk.copies.set(slot, copies);
+        chunk.available.set(slot, copies);
+        chunk.syncStatus(slot);
+
+        reserved = id + 1;
+        return id;
+    }
+
+    // Makes a filled record visible to lookups and listings; called with the monitor held
+    private void publish(int id) {
+        size = id + 1;
+        isbnIndex.put(isbnOf(id), id);
+    }
+
+    // Waits until every earlier record is visible, then publishes this one
+    private synchronized void publishInOrder(int id) {
+        boolean interrupted = false;
+        while (size != id) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        publish(id);
+        notifyAll();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int authorId(String author) {
+        Integer id = authorIds.get(author);
+        if (id != null) {
+            return id;
+        }
+        int next = authorIds.size();
+        if (next == authorNames.length) {
+            authorNames = Arrays.copyOf(authorNames, next * 2);
+        }
+        authorNames[next] = author;
+        authorIds.put(author, next);
+        return next;
+    }
+
+    private Book view(int id) {
+        return id < size ? record(id) : null;
+    }
+
+    // Builds a view of a filled record, visible or not; called with the monitor held for unpublished records
+    private Book record(int id) {
+        Chunk chunk = chunks[id >>> CHUNK_BITS];
+        int slot = id & CHUNK_MASK;
+        int start = chunk.titleStart(slot);
+        String title = new String(chunk.titleBytes, start, chunk.titleEnds[slot] - start, StandardCharsets.UTF_8);
+        return new View(id, chunk, slot, title, authorNames[chunk.authors[slot]], ISBNValidator.unpack(chunk.isbns[slot]));
+    }
+
+    private long isbnOf(int id) {
+        return chunks[id >>> CHUNK_BITS].isbns[id & CHUNK_MASK];
+    }
+
+    private Status statusOf(int id) {
+        return chunks[id >>> CHUNK_BITS].isAvailable(id & CHUNK_MASK) ? Status.AVAILABLE : Status.UNAVAILABLE;
+    }
+
+    // Same key layout as BookService's title index: lowercase title, NUL, ISBN
+    private String titleKey(int id) {
+        Chunk chunk = chunks[id >>> CHUNK_BITS];
+        int slot = id & CHUNK_MASK;
+        int start = chunk.titleStart(slot);
+        String title = new String(chunk.titleBytes, start, chunk.titleEnds[slot] - start, StandardCharsets.UTF_8);
+        return title.toLowerCase(Locale.ROOT) + '\u0000' + ISBNValidator.unpack(chunk.isbns[slot]);
+    }
+
+    private static long parseIsbn(String cursorIsbn) {
+        long packed = ISBNValidator.pack(cursorIsbn);
+        if (packed == ISBNValidator.INVALID) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return packed;
+    }
+
+    private synchronized int[] isbnOrder() {
+        isbnOrder = extendOrder(isbnOrder, size, (a, b) -> Long.compare(isbnOf(a), isbnOf(b)));
+        return isbnOrder;
+    }
+
+    private synchronized int[] titleOrder() {
+        // Decode each added title once instead of on every comparison
+        int from = titleOrder.length;
+        String[] keys = new String[size - from];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = titleKey(from + i);
+        }
+        titleOrder = extendOrder(titleOrder, from + keys.length,
+                (a, b) -> (a < from ? titleKey(a) : keys[a - from]).compareTo(keys[b - from]));
+        return titleOrder;
+    }
+
+    // Sorts the records added since the order was last built and merges them in;
+    // the comparator's second id is always an added record
+    private static int[] extendOrder(int[] order, int count, RecordOrder comparator) {
+        if (order.length == count) {
+            return order;
+        }
+        int[] added = new int[count - order.length];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = order.length + i;
+        }
+        sort(added, new int[added.length], 0, added.length, comparator);
+
+        int[] merged = new int[count];
+        int i = 0, j = 0, k = 0;
+        while (i < order.length && j < added.length) {
+            merged[k++] = comparator.compare(order[i], added[j]) <= 0 ? order[i++] : added[j++];
+        }
+        while (i < order.length) merged[k++] = order[i++];
+        while (j < added.length) merged[k++] = added[j++];
+        return merged;
+    }
+
+    // Stable merge sort on primitive ids, so equal keys stay in id order
+    private static void sort(int[] ids, int[] buffer, int low, int high, RecordOrder comparator) {
+        if (high - low < 2) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        sort(ids, buffer, low, mid, comparator);
+        sort(ids, buffer, mid, high, comparator);
+        if (comparator.compare(ids[mid - 1], ids[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(ids, low, buffer, low, high - low);
+        int i = low, j = mid;
+        for (int k = low; k < high; k++) {
+            ids[k] = j >= high || i < mid && comparator.compare(buffer[i], buffer[j]) <= 0 ? buffer[i++] : buffer[j++];
+        }
+    }
+
+    private interface RecordOrder {
+        int compare(int a, int b);
+    }
+
+    private int firstIsbnAfter(int[] order, long isbn) {
+        int low = 0, high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (isbnOf(order[mid]) <= isbn) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int firstTitleAfter(int[] order, String key) {
+        int low = 0, high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (titleKey(order[mid]).compareTo(key) <= 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static long matchAuthor(String author, String[] keywords, int keywordCount) {
+        String lower = author.toLowerCase(Locale.ROOT);
+        long mask = 0;
+        for (int k = 0; k < keywordCount; k++) {
+            if (lower.contains(keywords[k])) {
+                mask |= 1L << k;
+            }
+        }
+        return mask;
+    }
+
+    // Substring test on the stored UTF-8 bytes with ASCII case folding; keywords with
+    // other characters fall back to decoding and lowercasing the title
+    private static boolean titleContains(Chunk chunk, int slot, String keyword, byte[] needle) {
+        byte[] heap = chunk.titleBytes;
+        int start = chunk.titleStart(slot);
+        if (needle.length != keyword.length()) {
+            String title = new String(heap, start, chunk.titleEnds[slot] - start, StandardCharsets.UTF_8);
+            return title.toLowerCase(Locale.ROOT).contains(keyword);
+        }
+        int last = chunk.titleEnds[slot] - needle.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                byte b = heap[i + j];
+                if (b >= 'A' && b <= 'Z') b += 'a' - 'A';
+                if (b != needle[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Book materialized from one record. Copy counters read and write the columns,
+     * so every view of the record sees the same availability.
+     */
+    private final class View extends Book {
+        private final int id;
+        private final Chunk chunk;
+        private final int slot;
+
+        View(int id, Chunk chunk, int slot, String title, String author, String isbn) {
+            super(title, author, isbn, Counters.EXTERNAL);
+            this.id = id;
+            this.chunk = chunk;
+            this.slot = slot;
+        }
+
+        @Override
+        public int getCopies() {
+            return chunk.copies.get(slot);
+        }
+
+        @Override
+        public int getAvailableCopies() {
+            return chunk.available.get(slot);
+        }
+
+        @Override
+        public Status getStatus() {
+            return chunk.isAvailable(slot) ? Status.AVAILABLE : Status.UNAVAILABLE;
+        }
+
+        @Override
+        public boolean tryCheckOutCopy() {
+            int available;
+            do {
+                available = chunk.available.get(slot);
+                if (available == 0) {
+                    return false;
+                }
+            } while (!chunk.available.compareAndSet(slot, available, available - 1));
+            if (available == 1) {
+                chunk.syncStatus(slot);
+            }
+            return true;
+        }
+
+        @Override
+        public void returnCopy() {
+            if (chunk.available.incrementAndGet(slot) == 1) {
+                chunk.syncStatus(slot);
+            }
+        }
+
+        @Override
+        public void addCopies(int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Copies to add must be positive: " + count);
+            }
+            chunk.copies.addAndGet(slot, count);
+            chunk.available.addAndGet(slot, count);
+            chunk.syncStatus(slot);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof View view && view.id == id && view.owner() == ColumnarLibrary.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(id);
+        }
+
+        private ColumnarLibrary owner() {
+            return ColumnarLibrary.this;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads CSV or TSV files as a lazy stream of field arrays for bulk imports.
+ * Files ending in ".tsv" are split on tabs; everything else is treated as CSV,
+ * where fields may be wrapped in double quotes (with "" as an escaped quote).
+ */
+public final class DelimitedRecords {
+
+    private DelimitedRecords() {
+    }
+
+    /**
+     * Opens a file as a stream of records. Blank lines are skipped.
+     * The stream must be closed to release the file.
+     *
+     * @param path       File to read.
+     * @param skipHeader If true, the first line is ignored.
+     * @return Lazily parsed records.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static Stream<String[]> read(Path path, boolean skipHeader) throws IOException {
+        char delimiter = path.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8);
+        if (skipHeader) {
+            lines = lines.skip(1);
+        }
+        return lines.filter(line -> !line.isBlank())
+                .map(line -> delimiter == '\t' ? line.split("\t", -1) : splitCsv(line));
+    }
+
+    // Splits one CSV line, honouring double-quoted fields
+    private static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,76 @@
+package service;
+
+/**
+ * Approximate access counts for cache admission (the TinyLFU part of W-TinyLFU).
+ * A count-min sketch of four rows of 4-bit counters packed into longs; all counters are
+ * halved periodically so that popularity ages out. Not thread-safe; callers hold a lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedEntries Number of entries the cache is expected to hold.
+     */
+    FrequencySketch(int expectedEntries) {
+        int length = Integer.highestOneBit(Math.max(16, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+        table = new long[length];
+        mask = length - 1;
+        sampleSize = length * 10;
+    }
+
+    /**
+     * @param hash Hash of the item.
+     * @return Estimated number of recent accesses, at most 15.
+     */
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int row = 0; row < 4; row++) {
+            int offset = offset(hash, row);
+            frequency = Math.min(frequency, (int) ((table[index(hash, row)] >>> offset) & 0xF));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one access of the item.
+     *
+     * @param hash Hash of the item.
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < 4; row++) {
+            int index = index(hash, row);
+            int offset = offset(hash, row);
+            if (((table[index] >>> offset) & 0xF) < 15) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions /= 2;
+        }
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    // Bit offset of the row's counter within its long: one of 16 nibbles
+    private static int offset(int hash, int row) {
+        return ((hash >>> (row << 3)) & 0xF) << 2;
+    }
+}
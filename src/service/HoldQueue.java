@@ -0,0 +1,186 @@
+package service;
+
+import model.Book;
+import model.Hold;
+import model.Member;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-book FIFO queues of holds plus the set-aside copies waiting for pickup.
+ * Enqueue and handoff are O(1) lock-free queue operations on the book's own queue;
+ * there is no lock shared between books. Each queue is capped, so a popular title
+ * cannot grow without bound.
+ */
+class HoldQueue {
+
+    /**
+     * Identifies the open hold of one member for one title.
+     */
+    private record HoldKey(Book book, Member member) {
+    }
+
+    /**
+     * Waiting holds of one book. The size counts queued holds and reserves room
+     * before a hold is added, so the cap is never exceeded.
+     */
+    private static final class BookHolds {
+        final Queue<Hold> waiting = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    private final int maxHoldsPerBook;
+    private final int pickupWindowDays;
+
+    private final Map<Book, BookHolds> queues = new ConcurrentHashMap<>();
+
+    // Holds that are WAITING or READY, for duplicate checks, pickup and cancellation
+    private final Map<HoldKey, Hold> openHolds = new ConcurrentHashMap<>();
+
+    // READY holds by pickup deadline, so expiry only touches holds that ran out
+    private final NavigableMap<LocalDate, Set<Hold>> readyByDeadline = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param maxHoldsPerBook  Maximum number of waiting holds per book.
+     * @param pickupWindowDays Days a set-aside copy is kept for the holder.
+     */
+    HoldQueue(int maxHoldsPerBook, int pickupWindowDays) {
+        this.maxHoldsPerBook = maxHoldsPerBook;
+        this.pickupWindowDays = pickupWindowDays;
+    }
+
+    /**
+     * Appends a hold to the end of the book's queue.
+     *
+     * @return PLACED with the hold and its queue position, ALREADY_HOLDING or QUEUE_FULL.
+     */
+    HoldResult place(Member member, Book book, LocalDate today) {
+        BookHolds holds = queues.computeIfAbsent(book, k -> new BookHolds());
+        int queued;
+        do {
+            queued = holds.size.get();
+            if (queued >= maxHoldsPerBook) {
+                return HoldResult.of(HoldResult.Outcome.QUEUE_FULL);
+            }
+        } while (!holds.size.compareAndSet(queued, queued + 1));
+
+        Hold hold = new Hold(member, book, today);
+        if (openHolds.putIfAbsent(new HoldKey(book, member), hold) != null) {
+            holds.size.decrementAndGet();
+            return HoldResult.of(HoldResult.Outcome.ALREADY_HOLDING);
+        }
+        holds.waiting.offer(hold);
+        return new HoldResult(HoldResult.Outcome.PLACED, hold, queued + 1);
+    }
+
+    /**
+     * Sets a copy aside for the first waiting hold of the book.
+     *
+     * @return The hold that received the copy, or null if nobody is waiting.
+     */
+    Hold handOff(Book book, LocalDate today) {
+        BookHolds holds = queues.get(book);
+        if (holds == null) {
+            return null;
+        }
+        Hold hold;
+        while ((hold = holds.waiting.poll()) != null) {
+            holds.size.decrementAndGet();
+            LocalDate deadline = today.plusDays(pickupWindowDays);
+            // Holds cancelled while queued are skipped
+            if (hold.markReady(deadline)) {
+                readyByDeadline.computeIfAbsent(deadline, k -> ConcurrentHashMap.newKeySet()).add(hold);
+                return hold;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fulfils the member's READY hold, if there is one; its set-aside copy becomes the loan's copy.
+     *
+     * @return The fulfilled hold, or null if the member has no copy waiting.
+     */
+    Hold claim(Member member, Book book) {
+        HoldKey key = new HoldKey(book, member);
+        Hold hold = openHolds.get(key);
+        if (hold == null || !hold.transition(Hold.State.READY, Hold.State.FULFILLED)) {
+            return null;
+        }
+        openHolds.remove(key, hold);
+        removeFromDeadlines(hold);
+        return hold;
+    }
+
+    /**
+     * Cancels the member's open hold.
+     *
+     * @return The state the hold was cancelled from (WAITING or READY), or null if there was none.
+     */
+    Hold.State cancel(Member member, Book book) {
+        Hold hold = openHolds.remove(new HoldKey(book, member));
+        if (hold == null) {
+            return null;
+        }
+        if (hold.transition(Hold.State.WAITING, Hold.State.CANCELLED)) {
+            // Removing from the middle is O(n) but keeps cancelled holds from occupying the cap
+            BookHolds holds = queues.get(book);
+            if (holds != null && holds.waiting.remove(hold)) {
+                holds.size.decrementAndGet();
+            }
+            return Hold.State.WAITING;
+        }
+        if (hold.transition(Hold.State.READY, Hold.State.CANCELLED)) {
+            removeFromDeadlines(hold);
+            return Hold.State.READY;
+        }
+        return null;
+    }
+
+    /**
+     * Expires READY holds whose pickup deadline is before today.
+     *
+     * @return The expired holds; their set-aside copies must be passed on by the caller.
+     */
+    List<Hold> expire(LocalDate today) {
+        List<Hold> expired = new ArrayList<>();
+        Iterator<Map.Entry<LocalDate, Set<Hold>>> days = readyByDeadline.headMap(today, false).entrySet().iterator();
+        while (days.hasNext()) {
+            for (Hold hold : days.next().getValue()) {
+                if (hold.transition(Hold.State.READY, Hold.State.EXPIRED)) {
+                    openHolds.remove(new HoldKey(hold.getBook(), hold.getMember()), hold);
+                    expired.add(hold);
+                }
+            }
+            days.remove();
+        }
+        return expired;
+    }
+
+    /**
+     * @return The member's WAITING or READY hold on the book, or null.
+     */
+    Hold find(Member member, Book book) {
+        return openHolds.get(new HoldKey(book, member));
+    }
+
+    /**
+     * @return Number of holds queued for the book.
+     */
+    int waiting(Book book) {
+        BookHolds holds = queues.get(book);
+        return holds == null ? 0 : holds.size.get();
+    }
+
+    private void removeFromDeadlines(Hold hold) {
+        Set<Hold> sameDay = readyByDeadline.get(hold.getPickupDeadline());
+        if (sameDay != null) {
+            sameDay.remove(hold);
+        }
+    }
+}
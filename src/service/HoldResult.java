@@ -0,0 +1,29 @@
+package service;
+
+import model.Hold;
+
+/**
+ * Result of a hold request.
+ *
+ * @param outcome  What happened.
+ * @param hold     The placed hold; null unless the outcome is PLACED.
+ * @param position Position in the book's queue when placed, starting at 1; 0 otherwise.
+ */
+public record HoldResult(Outcome outcome, Hold hold, int position) {
+
+    /**
+     * Possible outcomes of a hold request.
+     */
+    public enum Outcome {
+        PLACED,
+        AVAILABLE,
+        ALREADY_HOLDING,
+        ALREADY_BORROWED,
+        QUEUE_FULL,
+        INVALID_REQUEST
+    }
+
+    static HoldResult of(Outcome outcome) {
+        return new HoldResult(outcome, null, 0);
+    }
+}
@@ -0,0 +1,116 @@
+package service;
+
+/**
+ * A utility class to validate ISBN-10 and ISBN-13 formats.
+ * Validation, normalization and packing all work in a single pass over the input
+ * without regular expressions or intermediate strings.
+ */
+public class ISBNValidator {
+
+    /**
+     * Returned by {@link #pack(CharSequence)} for input that is not a valid ISBN.
+     */
+    public static final long INVALID = -1L;
+
+    // "978" prefix used when converting ISBN-10 to ISBN-13, as a 13-digit value
+    private static final long PREFIX_978 = 978_000_000_000_0L;
+
+    // Weighted ISBN-13 checksum contribution of the "978" prefix (9*1 + 7*3 + 8*1)
+    private static final int PREFIX_978_SUM = 38;
+
+    /**
+     * Validates the ISBN, ignoring hyphens and spaces.
+     * Supports ISBN-10 and ISBN-13 formats.
+     *
+     * @param isbn Raw ISBN.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValidISBN(CharSequence isbn) {
+        return pack(isbn) != INVALID;
+    }
+
+    /**
+     * Validates the ISBN and packs it into a long holding its ISBN-13 digits.
+     * ISBN-10 input is converted to its "978" ISBN-13 equivalent, so both forms
+     * of the same book produce the same key. Does not allocate.
+     *
+     * @param isbn Raw ISBN; hyphens and spaces are ignored.
+     * @return The ISBN-13 as a number, or {@link #INVALID}.
+     */
+    public static long pack(CharSequence isbn) {
+        if (isbn == null) return INVALID;
+
+        long digits = 0;       // all digits read so far
+        long first9 = 0;       // first nine digits, the ISBN-10 body
+        int count = 0;         // characters consumed, excluding separators
+        int sum10 = 0;         // ISBN-10 checksum, weights 10..1
+        int sum13 = 0;         // ISBN-13 checksum, weights 1,3,1,3...
+        int convertedSum = 0;  // ISBN-13 checksum of the first 9 digits when placed after "978"
+        boolean checkX = false;
+
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') continue;
+            if (checkX || count == 13) return INVALID;
+
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if ((c == 'X' || c == 'x') && count == 9) {
+                digit = 10;
+                checkX = true;
+            } else {
+                return INVALID;
+            }
+
+            if (count < 10) {
+                sum10 += digit * (10 - count);
+            }
+            if (count < 9) {
+                first9 = first9 * 10 + digit;
+                convertedSum += (count % 2 == 0) ? digit * 3 : digit;
+            }
+            if (!checkX) {
+                digits = digits * 10 + digit;
+                sum13 += (count % 2 == 0) ? digit : digit * 3;
+            }
+            count++;
+        }
+
+        if (count == 10) {
+            if (sum10 % 11 != 0) return INVALID;
+            int check = (10 - (PREFIX_978_SUM + convertedSum) % 10) % 10;
+            return PREFIX_978 + first9 * 10 + check;
+        }
+        if (count == 13 && !checkX) {
+            return sum13 % 10 == 0 ? digits : INVALID;
+        }
+        return INVALID;
+    }
+
+    /**
+     * Formats a packed ISBN as its 13-digit canonical string.
+     *
+     * @param packed Value returned by {@link #pack(CharSequence)}.
+     * @return 13-digit ISBN string.
+     */
+    public static String unpack(long packed) {
+        char[] chars = new char[13];
+        for (int i = 12; i >= 0; i--) {
+            chars[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Converts a valid ISBN-10 or ISBN-13 into its canonical ISBN-13 form.
+     *
+     * @param isbn Raw ISBN.
+     * @return 13-digit ISBN, or null if the input is not a valid ISBN.
+     */
+    public static String toIsbn13(CharSequence isbn) {
+        long packed = pack(isbn);
+        return packed == INVALID ? null : unpack(packed);
+    }
+}
@@ -0,0 +1,49 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many records were added and which rows were rejected.
+ */
+public class ImportResult {
+
+    /**
+     * A rejected input row.
+     *
+     * @param row     1-based row number within the imported records.
+     * @param message Reason the row was rejected.
+     */
+    public record RowError(long row, String message) {
+        @Override
+        public String toString() {
+            return "Row " + row + ": " + message;
+        }
+    }
+
+    private final List<RowError> errors = new ArrayList<>();
+    private int imported;
+
+    void addError(long row, String message) {
+        errors.add(new RowError(row, message));
+    }
+
+    void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    // Getters
+    public int getImported() {
+        return imported;
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return "Imported: " + imported + ", rejected: " + errors.size();
+    }
+}
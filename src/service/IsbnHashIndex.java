@@ -0,0 +1,142 @@
+package service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table from packed ISBN-13 to an int record id.
+ * Keys and values live in two primitive arrays, so an entry costs 12 bytes instead of
+ * a boxed map node. Lookups are optimistic and lock-free unless they race with a write.
+ */
+class IsbnHashIndex {
+
+    // Value stored for ISBNs that are reserved but have no record yet
+    static final int RESERVED = -1;
+
+    // Value returned for ISBNs that are not in the table
+    static final int ABSENT = -2;
+
+    // Empty slot marker; pack never returns it for a valid ISBN
+    private static final long EMPTY = ISBNValidator.INVALID;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] keys = emptyKeys(1024);
+    private int[] values = new int[1024];
+    private int size;
+
+    /**
+     * Looks up a packed ISBN.
+     *
+     * @param isbn Packed ISBN-13.
+     * @return The record id, {@link #RESERVED} or {@link #ABSENT}.
+     */
+    int get(long isbn) {
+        long stamp = lock.tryOptimisticRead();
+        int value = probe(keys, values, isbn);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(keys, values, isbn);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reserves an ISBN without a record.
+     *
+     * @param isbn Packed ISBN-13.
+     * @return true if the ISBN was not present before.
+     */
+    boolean reserve(long isbn) {
+        long stamp = lock.writeLock();
+        try {
+            if (probe(keys, values, isbn) != ABSENT) {
+                return false;
+            }
+            insert(isbn, RESERVED);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Maps an ISBN to a record id, replacing a reservation or an older record.
+     *
+     * @param isbn Packed ISBN-13.
+     * @param id   Record id.
+     */
+    void put(long isbn, int id) {
+        long stamp = lock.writeLock();
+        try {
+            insert(isbn, id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Called with the write lock held
+    private void insert(long isbn, int value) {
+        if ((size + 1) * 4L > keys.length * 3L) {
+            grow();
+        }
+        int mask = keys.length - 1;
+        for (int slot = slot(isbn, mask); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == isbn) {
+                values[slot] = value;
+                return;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = isbn;
+                values[slot] = value;
+                size++;
+                return;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] newKeys = emptyKeys(oldKeys.length * 2);
+        int[] newValues = new int[oldKeys.length * 2];
+        int mask = newKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slot(oldKeys[i], mask);
+            while (newKeys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newKeys[slot] = oldKeys[i];
+            newValues[slot] = oldValues[i];
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    // Bounded probe so a torn optimistic read cannot loop forever
+    private static int probe(long[] keys, int[] values, long isbn) {
+        int mask = keys.length - 1;
+        int slot = slot(isbn, mask);
+        for (int i = 0; i < keys.length; i++, slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == isbn) return values[slot];
+            if (key == EMPTY) return ABSENT;
+        }
+        return ABSENT;
+    }
+
+    private static long[] emptyKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private static int slot(long isbn, int mask) {
+        long h = isbn * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
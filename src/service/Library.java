@@ -1,19 +1,34 @@
 package service;
 
 import model.Book;
+import model.enums.Status;
+
+import java.util.List;
 
 /**
  * Interface defining the basic book-related library operations.
  */
 public interface Library {
 
-    void create(String title, String author, String isbn);
+    Book create(String title, String author, String isbn);
+
+    Book create(String title, String author, String isbn, int copies);
+
+    Book addCopies(String isbn, int copies);
+
+    List<Book> list();
 
-    void list();
+    Page<Book> list(BookSort sort, Status status, String cursor, int pageSize);
 
-    void findBookByTitle(String title);
+    List<Book> findBookByTitle(String title);
 
     boolean addIsbn(String isbn);
 
-    Book findBookByIsbn(String isbn, boolean print);
+    Book findBookByIsbn(String isbn);
+
+    Book restore(String title, String author, String isbn, int copies);
+
+    void setEventListener(LibraryEventListener listener);
+
+    void setMutationGate(MutationGate gate);
 }
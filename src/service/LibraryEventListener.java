@@ -0,0 +1,109 @@
+package service;
+
+import model.Book;
+import model.Hold;
+import model.LedgerEntry;
+import model.Loan;
+import model.Member;
+
+/**
+ * Receives notifications about state changes made through the services.
+ * Used to persist or publish mutations after they have been applied.
+ */
+public interface LibraryEventListener {
+
+    /**
+     * Listener that ignores all events; used when nothing is attached.
+     */
+    LibraryEventListener NONE = new LibraryEventListener() {
+    };
+
+    default void bookCreated(Book book) {
+    }
+
+    /**
+     * @param book   The book that received new copies.
+     * @param copies Number of copies added.
+     */
+    default void copiesAdded(Book book, int copies) {
+    }
+
+    default void memberCreated(Member member) {
+    }
+
+    default void bookCheckedOut(Loan loan) {
+    }
+
+    /**
+     * @param loan The loan that was closed.
+     * @param feeCents Late fee charged for the return in cents, 0 if none.
+     */
+    default void bookReturned(Loan loan, long feeCents) {
+    }
+
+    /**
+     * @param hold The hold a returned copy has been set aside for; its pickup deadline is set.
+     */
+    default void holdReady(Hold hold) {
+    }
+
+    /**
+     * @param member  The member who paid.
+     * @param payment The recorded payment entry.
+     */
+    default void paymentRecorded(Member member, LedgerEntry payment) {
+    }
+
+    /**
+     * Returns a listener that notifies this listener and then the next one.
+     *
+     * @param next Listener notified second.
+     * @return The combined listener.
+     */
+    default LibraryEventListener andThen(LibraryEventListener next) {
+        LibraryEventListener first = this;
+        return new LibraryEventListener() {
+            @Override
+            public void bookCreated(Book book) {
+                first.bookCreated(book);
+                next.bookCreated(book);
+            }
+
+            @Override
+            public void copiesAdded(Book book, int copies) {
+                first.copiesAdded(book, copies);
+                next.copiesAdded(book, copies);
+            }
+
+            @Override
+            public void memberCreated(Member member) {
+                first.memberCreated(member);
+                next.memberCreated(member);
+            }
+
+            @Override
+            public void bookCheckedOut(Loan loan) {
+                first.bookCheckedOut(loan);
+                next.bookCheckedOut(loan);
+            }
+
+            @Override
+            public void bookReturned(Loan loan, long feeCents) {
+                first.bookReturned(loan, feeCents);
+                next.bookReturned(loan, feeCents);
+            }
+
+            @Override
+            public void holdReady(Hold hold) {
+                first.holdReady(hold);
+                next.holdReady(hold);
+            }
+
+            @Override
+            public void paymentRecorded(Member member, LedgerEntry payment) {
+                first.paymentRecorded(member, payment);
+                next.paymentRecorded(member, payment);
+            }
+        };
+    }
+}
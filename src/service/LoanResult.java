@@ -0,0 +1,46 @@
+package service;
+
+import model.Loan;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Result of a check-out or return request.
+ *
+ * @param outcome  What happened.
+ * @param loan     The loan that was opened or closed; null unless the request succeeded.
+ * @param feeCents Late fee charged on return, in cents; 0 otherwise.
+ */
+public record LoanResult(Outcome outcome, Loan loan, long feeCents) {
+
+    /**
+     * Possible outcomes of a loan request.
+     */
+    public enum Outcome {
+        CHECKED_OUT,
+        RETURNED,
+        INVALID_REQUEST,
+        ALREADY_CHECKED_OUT,
+        DUPLICATE_LOAN,
+        NOT_CHECKED_OUT,
+        NO_ACTIVE_LOAN
+    }
+
+    static LoanResult of(Outcome outcome) {
+        return new LoanResult(outcome, null, 0);
+    }
+
+    public boolean isSuccess() {
+        return outcome == Outcome.CHECKED_OUT || outcome == Outcome.RETURNED;
+    }
+
+    /**
+     * Returns how many days past the due date the book was returned.
+     *
+     * @return Late days, or 0 if the book was on time or this is not a return.
+     */
+    public long lateDays() {
+        if (outcome != Outcome.RETURNED) return 0;
+        return Math.max(0, ChronoUnit.DAYS.between(loan.getDueDate(), loan.getReturnDate()));
+    }
+}
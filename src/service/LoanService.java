@@ -1,106 +1,504 @@
 package service;
 
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
 import model.Book;
+import model.Hold;
+import model.LedgerEntry;
 import model.Loan;
 import model.Member;
-import model.enums.Status;
 
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Handles book lending (check out) and return operations.
+ * Safe for concurrent use without locks: a copy is taken with a CAS on the book's
+ * available-copy counter, and each (book, member) pair has at most one open loan,
+ * enforced by an atomic insert into the active loan index. The listener is notified
+ * outside the index's compute calls, under the loan's monitor, so a return is never
+ * published before the check-out it closes.
+ * Loan, return and hold dates come from an injectable {@link Clock}, so a simulation
+ * can drive the lifecycle at accelerated time.
  */
 public class LoanService {
 
     /**
-     * Daily late fee amount charged per overdue day.
+     * Late fee charged per overdue day, in cents.
      */
-    private static final int LATE_FEE_PER_DAY = 5;
+    private static final long LATE_FEE_CENTS_PER_DAY = 500;
 
     /**
-     * Checks out a book to a member if the book is available.
-     * Updates book status and adds a loan record to the member.
+     * Days a returned copy is kept for the next holder before the hold expires.
+     */
+    private static final int PICKUP_WINDOW_DAYS = 3;
+
+    /**
+     * Maximum number of waiting holds per book.
+     */
+    private static final int MAX_HOLDS_PER_BOOK = 5_000;
+
+    /**
+     * Identifies the open loan of one member for one title.
+     */
+    private record LoanKey(Book book, Member member) {
+    }
+
+    // Open (not yet returned) loans keyed by book and borrowing member
+    private final Map<LoanKey, Loan> activeLoans = new ConcurrentHashMap<>();
+
+    // Open loans grouped by the borrowing member; lists are immutable and replaced on change
+    private final Map<Member, List<Loan>> activeLoansByMember = new ConcurrentHashMap<>();
+
+    // Open loans ordered by due date, so overdue processing only touches loans that are due.
+    // Emptied day buckets are kept; there is at most one per calendar day.
+    private final NavigableMap<LocalDate, Set<Loan>> activeLoansByDueDate = new ConcurrentSkipListMap<>();
+
+    // Per-book hold queues; returned copies go to the first holder instead of the shelf
+    private final HoldQueue holds = new HoldQueue(MAX_HOLDS_PER_BOOK, PICKUP_WINDOW_DAYS);
+
+    // Notified after each successful mutation
+    private volatile LibraryEventListener listener = LibraryEventListener.NONE;
+
+    // Held from each check-out or return until its listener has been notified
+    private volatile MutationGate gate = MutationGate.NONE;
+
+    // Source of "today" for loan, return and hold dates
+    private final Clock clock;
+
+    // Hot-path metrics, resolved once so recording does not look anything up
+    private final LatencyHistogram checkOutLatency;
+    private final LatencyHistogram returnLatency;
+    private final LongAdder[] outcomes = new LongAdder[LoanResult.Outcome.values().length];
+    private final LongAdder lateFeesCents;
+
+    public LoanService() {
+        this(new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics Registry receiving outcome counters, latency histograms and loan gauges.
+     */
+    public LoanService(MetricsRegistry metrics) {
+        this(metrics, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param metrics Registry receiving outcome counters, latency histograms and loan gauges.
+     * @param clock   Source of the current date for loans, returns and holds.
+     */
+    public LoanService(MetricsRegistry metrics, Clock clock) {
+        this.clock = clock;
+        checkOutLatency = metrics.histogram("loan.checkOut.latency");
+        returnLatency = metrics.histogram("loan.return.latency");
+        for (LoanResult.Outcome outcome : LoanResult.Outcome.values()) {
+            outcomes[outcome.ordinal()] = metrics.counter("loan.outcome." + outcome.name().toLowerCase(Locale.ROOT));
+        }
+        lateFeesCents = metrics.counter("loan.lateFees.cents");
+        metrics.gauge("loan.active", activeLoans::size);
+        metrics.gauge("loan.activeMembers", activeLoansByMember::size);
+    }
+
+    /**
+     * Checks out one copy of a book to a member if a copy is available.
+     * A member whose hold is ready gets the copy set aside for them.
+     * A member can hold at most one copy of the same book at a time.
      *
      * @param foundMember The member borrowing the book.
      * @param foundBook   The book to be borrowed.
+     * @return CHECKED_OUT with the new loan, INVALID_REQUEST, ALREADY_CHECKED_OUT or DUPLICATE_LOAN.
      */
-    public void checkOut(Member foundMember, Book foundBook) {
-        if (foundBook == null || foundMember == null) {
-            System.out.println("Invalid member or book.");
-            return;
+    public LoanResult checkOut(Member foundMember, Book foundBook) {
+        long start = System.nanoTime();
+        MutationGate gate = this.gate;
+        gate.enter();
+        LoanResult result;
+        try {
+            result = tryCheckOut(foundMember, foundBook);
+        } finally {
+            gate.exit();
         }
+        checkOutLatency.record(System.nanoTime() - start);
+        outcomes[result.outcome().ordinal()].increment();
+        return result;
+    }
 
-        if (foundBook.getStatus() == Status.AVAILABLE) {
-            foundBook.setStatus(Status.UNAVAILABLE);
-
-            // Create a new Loan record
-            Loan loan = new Loan(foundMember, foundBook);
+    private LoanResult tryCheckOut(Member foundMember, Book foundBook) {
+        if (foundBook == null || foundMember == null) {
+            return LoanResult.of(LoanResult.Outcome.INVALID_REQUEST);
+        }
 
-            // Add loan to member's loan list
-            foundMember.getLoanList().add(loan);
+        LoanKey key = new LoanKey(foundBook, foundMember);
+        if (activeLoans.containsKey(key)) {
+            return LoanResult.of(LoanResult.Outcome.DUPLICATE_LOAN);
+        }
+        // A ready hold already took a copy off the shelf for this member
+        Hold hold = holds.claim(foundMember, foundBook);
+        if (hold == null && !foundBook.tryCheckOutCopy()) {
+            return LoanResult.of(LoanResult.Outcome.ALREADY_CHECKED_OUT);
+        }
 
-            System.out.println("Book successfully checked out to user: " + foundMember.getEmail());
-        } else {
-            System.out.println("Book not found or already checked out.");
+        // Create the Loan record. Its monitor is held from before the insert until the
+        // listener has been told, so a concurrent return of it publishes afterwards.
+        Loan loan = new Loan(foundMember, foundBook, clock);
+        synchronized (loan) {
+            Loan stored = activeLoans.compute(key, (k, existing) -> {
+                if (existing != null) {
+                    return existing;
+                }
+                recordOpened(loan);
+                return loan;
+            });
+            if (stored == loan) {
+                listener.bookCheckedOut(loan);
+                return new LoanResult(LoanResult.Outcome.CHECKED_OUT, loan, 0);
+            }
         }
+
+        // Lost a race with another check-out of the same book by the same member
+        publishReady(releaseCopy(foundBook, LocalDate.now(clock)));
+        return LoanResult.of(LoanResult.Outcome.DUPLICATE_LOAN);
     }
 
     /**
      * Processes the return of a book by a member.
-     * Calculates any late fees, updates the book's status to AVAILABLE, and sets the loan return date to now.
+     * Calculates any late fees, sets the loan return date to the clock's date, and hands
+     * the copy to the first waiting holder or puts it back on the shelf.
      *
      * @param foundBook   The book being returned.
      * @param foundMember The member returning the book.
+     * @return RETURNED with the closed loan and late fee, INVALID_REQUEST, NOT_CHECKED_OUT or NO_ACTIVE_LOAN.
      */
-    public void returnBook(Book foundBook, Member foundMember) {
+    public LoanResult returnBook(Book foundBook, Member foundMember) {
+        long start = System.nanoTime();
+        MutationGate gate = this.gate;
+        gate.enter();
+        LoanResult result;
+        try {
+            result = tryReturn(foundBook, foundMember);
+        } finally {
+            gate.exit();
+        }
+        returnLatency.record(System.nanoTime() - start);
+        outcomes[result.outcome().ordinal()].increment();
+        lateFeesCents.add(result.feeCents());
+        return result;
+    }
+
+    private LoanResult tryReturn(Book foundBook, Member foundMember) {
         // Defensive null checks
         if (foundBook == null || foundMember == null) {
-            System.out.println("Invalid book or member information.");
-            return;
+            return LoanResult.of(LoanResult.Outcome.INVALID_REQUEST);
         }
 
-        // Check if the book is currently checked out (status UNAVAILABLE)
-        if (foundBook.getStatus() != Status.UNAVAILABLE) {
-            System.out.println("Book not found or is not checked out.");
-            return;
+        // The whole return runs inside computeIfPresent, so two concurrent returns
+        // of the same loan cannot both succeed
+        Loan[] closed = new Loan[1];
+        long[] fee = new long[1];
+        Hold[] ready = new Hold[1];
+        activeLoans.computeIfPresent(new LoanKey(foundBook, foundMember), (k, loan) -> {
+            LocalDate today = LocalDate.now(clock);
+
+            // Calculate the late fee and add it to the member's ledger
+            fee[0] = calculateDebt(loan);
+            chargeLateFee(loan, today, fee[0]);
+
+            // Record the return date as today and pass the copy on
+            loan.setReturnDate(today);
+            recordClosed(loan);
+            ready[0] = releaseCopy(foundBook, today);
+            closed[0] = loan;
+            return null;
+        });
+
+        if (closed[0] == null) {
+            // No copy of this book is out at all, or none of them is with this member
+            return LoanResult.of(foundBook.getAvailableCopies() == foundBook.getCopies()
+                    ? LoanResult.Outcome.NOT_CHECKED_OUT
+                    : LoanResult.Outcome.NO_ACTIVE_LOAN);
+        }
+        synchronized (closed[0]) {
+            listener.bookReturned(closed[0], fee[0]);
         }
+        publishReady(ready[0]);
+        return new LoanResult(LoanResult.Outcome.RETURNED, closed[0], fee[0]);
+    }
 
-        // Find the active loan (no return date) for this book and member
-        Loan activeLoan = findActiveLoan(foundBook, foundMember);
-        if (activeLoan == null) {
-            System.out.println("No active loan found for this book.");
+    /**
+     * Re-creates a persisted loan without notifying the listener.
+     * Loans without a return date are re-opened and take a copy off the shelf.
+     * Used during recovery.
+     *
+     * @param member     The borrowing member.
+     * @param book       The borrowed book.
+     * @param loanDate   Date the book was lent.
+     * @param returnDate Date the book was returned, or null if still on loan.
+     * @return The restored loan.
+     * @throws IllegalStateException If an open loan finds no copy left on the shelf, or the member
+     *                               already has an open loan of the book.
+     */
+    public Loan restoreLoan(Member member, Book book, LocalDate loanDate, LocalDate returnDate) {
+        Loan loan = new Loan(member, book, loanDate);
+        if (returnDate == null) {
+            if (activeLoans.containsKey(new LoanKey(book, member))) {
+                throw new IllegalStateException(member.getEmail() + " already has an open loan of " + book.getIsbn());
+            }
+            if (!book.tryCheckOutCopy()) {
+                throw new IllegalStateException("No copy of " + book.getIsbn() + " left for the loan by " + member.getEmail());
+            }
+            activeLoans.put(new LoanKey(book, member), loan);
+            recordOpened(loan);
+        } else {
+            loan.setReturnDate(returnDate);
+            member.getLoanList().add(loan);
+        }
+        return loan;
+    }
+
+    /**
+     * Re-applies a persisted return without notifying the listener.
+     * Used during recovery.
+     *
+     * @param book       The returned book.
+     * @param member     The member who returned it.
+     * @param returnDate Date of the return.
+     * @param feeCents   Late fee charged for the return, in cents.
+     */
+    public void restoreReturn(Book book, Member member, LocalDate returnDate, long feeCents) {
+        Loan loan = activeLoans.remove(new LoanKey(book, member));
+        if (loan == null) {
             return;
         }
+        chargeLateFee(loan, returnDate, feeCents);
+        loan.setReturnDate(returnDate);
+        recordClosed(loan);
+        book.returnCopy();
+    }
+
+    /**
+     * Places a hold for a member on a book with no copy on the shelf.
+     * Holds are served in the order they were placed.
+     *
+     * @param member The member placing the hold.
+     * @param book   The book to reserve.
+     * @return PLACED with the hold and queue position, AVAILABLE if a copy can be checked out right away,
+     * ALREADY_HOLDING, ALREADY_BORROWED, QUEUE_FULL or INVALID_REQUEST.
+     */
+    public HoldResult placeHold(Member member, Book book) {
+        if (member == null || book == null) {
+            return HoldResult.of(HoldResult.Outcome.INVALID_REQUEST);
+        }
+        if (activeLoans.containsKey(new LoanKey(book, member))) {
+            return HoldResult.of(HoldResult.Outcome.ALREADY_BORROWED);
+        }
+        if (book.getAvailableCopies() > 0 && holds.waiting(book) == 0) {
+            return HoldResult.of(HoldResult.Outcome.AVAILABLE);
+        }
 
-        // Calculate debt based on late days and update member debt
-        long debt = calculateDebt(activeLoan);
-        if (debt > 0) {
-            foundMember.setDebt(debt);
-            System.out.println("You are late by " + (debt / LATE_FEE_PER_DAY) + " days. Your debt is: " + debt);
+        HoldResult result = holds.place(member, book, LocalDate.now(clock));
+        if (result.outcome() == HoldResult.Outcome.PLACED) {
+            // A copy may have come back between the availability check and the enqueue
+            serveWaiting(book, LocalDate.now(clock));
         }
+        return result;
+    }
 
-        // Update book status to AVAILABLE and record the return date as today
-        foundBook.setStatus(Status.AVAILABLE);
-        activeLoan.setReturnDate(LocalDate.now());
+    /**
+     * Cancels a member's hold. A copy already set aside for it goes to the next holder.
+     *
+     * @param member The member who placed the hold.
+     * @param book   The reserved book.
+     * @return true if an open hold was cancelled.
+     */
+    public boolean cancelHold(Member member, Book book) {
+        if (member == null || book == null) {
+            return false;
+        }
+        Hold.State cancelled = holds.cancel(member, book);
+        if (cancelled == Hold.State.READY) {
+            publishReady(releaseCopy(book, LocalDate.now(clock)));
+        }
+        return cancelled != null;
+    }
+
+    /**
+     * Expires ready holds that were not picked up in time and passes their copies on.
+     *
+     * @param today The current date.
+     * @return Number of expired holds.
+     */
+    public int expireHolds(LocalDate today) {
+        List<Hold> expired = holds.expire(today);
+        for (Hold hold : expired) {
+            publishReady(releaseCopy(hold.getBook(), today));
+        }
+        return expired.size();
+    }
 
-        System.out.println("Book returned successfully!");
+    /**
+     * Returns a member's open (waiting or ready) hold on a book.
+     *
+     * @param member The member to look up.
+     * @param book   The reserved book.
+     * @return The hold, or null if there is none.
+     */
+    public Hold findHold(Member member, Book book) {
+        return member == null || book == null ? null : holds.find(member, book);
     }
 
     /**
-     * Finds an active (not yet returned) loan for the specified book and member.
+     * Returns a catalog listener that hands newly added copies to the book's waiting holders
+     * before they reach the shelf, the same way returned copies are passed on.
      *
-     * @param foundBook   The book to find the loan for.
-     * @param foundMember The member who borrowed the book.
-     * @return The active Loan object if found, otherwise null.
+     * @return Listener to chain onto the catalog's event listener.
      */
-    private Loan findActiveLoan(Book foundBook, Member foundMember) {
-        for (Loan loan : foundMember.getLoanList()) {
-            if (loan.getBook().equals(foundBook) && loan.getReturnDate() == null) {
-                return loan;
+    public LibraryEventListener copyHandOff() {
+        return new LibraryEventListener() {
+            @Override
+            public void copiesAdded(Book book, int copies) {
+                serveWaiting(book, LocalDate.now(clock));
             }
+        };
+    }
+
+    public void setEventListener(LibraryEventListener listener) {
+        this.listener = listener == null ? LibraryEventListener.NONE : listener;
+    }
+
+    public void setMutationGate(MutationGate gate) {
+        this.gate = gate == null ? MutationGate.NONE : gate;
+    }
+
+    /**
+     * @return The clock loan, return and hold dates are taken from.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Returns the loans a member currently has open.
+     *
+     * @param member The member to look up.
+     * @return Unmodifiable list of active loans; empty if none.
+     */
+    public List<Loan> getActiveLoans(Member member) {
+        List<Loan> loans = activeLoansByMember.get(member);
+        return loans == null ? Collections.emptyList() : loans;
+    }
+
+    /**
+     * Returns the open loans whose due date falls in the given range.
+     * Cost is proportional to the number of loans in the range, not to all open loans.
+     *
+     * @param from First due date to include.
+     * @param to   Due date to stop before (exclusive).
+     * @return Open loans due in [from, to), ordered by due date.
+     */
+    public List<Loan> findLoansDueBetween(LocalDate from, LocalDate to) {
+        List<Loan> due = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return due;
+        }
+        for (Set<Loan> loans : activeLoansByDueDate.subMap(from, true, to, false).values()) {
+            due.addAll(loans);
         }
-        return null;
+        return due;
+    }
+
+    /**
+     * Returns all open loans that are past their due date.
+     *
+     * @param today The current date.
+     * @return Overdue loans, ordered by due date.
+     */
+    public List<Loan> findOverdueLoans(LocalDate today) {
+        return findLoansDueBetween(LocalDate.MIN, today);
+    }
+
+    /**
+     * Calculates the late fee a loan has accrued up to the given date.
+     *
+     * @param loan  The loan to check.
+     * @param today The date to calculate up to.
+     * @return Accrued late fee in cents; 0 if the loan is not overdue on that date.
+     */
+    public long accruedFee(Loan loan, LocalDate today) {
+        long lateDays = ChronoUnit.DAYS.between(loan.getDueDate(), today);
+        return lateDays > 0 ? lateDays * LATE_FEE_CENTS_PER_DAY : 0;
+    }
+
+    // Gives a copy that left a loan or hold to the next holder, or puts it back on the shelf.
+    // Returns the hold that became ready, for the caller to publish outside any compute call.
+    private Hold releaseCopy(Book book, LocalDate today) {
+        Hold hold = holds.handOff(book, today);
+        if (hold == null) {
+            book.returnCopy();
+        }
+        return hold;
+    }
+
+    // Sets shelf copies aside for waiting holders in queue order until either runs out
+    private void serveWaiting(Book book, LocalDate today) {
+        while (holds.waiting(book) > 0 && book.tryCheckOutCopy()) {
+            Hold ready = holds.handOff(book, today);
+            if (ready == null) {
+                book.returnCopy();
+                return;
+            }
+            publishReady(ready);
+        }
+    }
+
+    private void publishReady(Hold hold) {
+        if (hold != null) {
+            listener.holdReady(hold);
+        }
+    }
+
+    // Appends a late fee for the loan to the member's ledger; nothing is recorded for a zero fee
+    private static void chargeLateFee(Loan loan, LocalDate date, long feeCents) {
+        if (feeCents > 0) {
+            loan.getMember().record(new LedgerEntry(LedgerEntry.Type.FEE, feeCents, date,
+                    "Late return of " + loan.getBook().getIsbn()));
+        }
+    }
+
+    /**
+     * Records a new loan on the member and in the per-member and due-date indexes.
+     *
+     * @param loan The loan that has been opened.
+     */
+    private void recordOpened(Loan loan) {
+        loan.getMember().getLoanList().add(loan);
+        activeLoansByDueDate.computeIfAbsent(loan.getDueDate(), k -> ConcurrentHashMap.newKeySet()).add(loan);
+        activeLoansByMember.compute(loan.getMember(), (member, loans) -> {
+            List<Loan> updated = loans == null ? new ArrayList<>(1) : new ArrayList<>(loans);
+            updated.add(loan);
+            return Collections.unmodifiableList(updated);
+        });
+    }
+
+    /**
+     * Removes a returned loan from the per-member and due-date indexes.
+     *
+     * @param loan The loan that has been returned.
+     */
+    private void recordClosed(Loan loan) {
+        Set<Loan> sameDay = activeLoansByDueDate.get(loan.getDueDate());
+        if (sameDay != null) {
+            sameDay.remove(loan);
+        }
+        activeLoansByMember.computeIfPresent(loan.getMember(), (member, loans) -> {
+            List<Loan> updated = new ArrayList<>(loans);
+            updated.remove(loan);
+            return updated.isEmpty() ? null : Collections.unmodifiableList(updated);
+        });
     }
 
     /**
@@ -108,13 +506,9 @@ public class LoanService {
      * Debt is computed as the number of days past the due date multiplied by the daily late fee.
      *
      * @param loan The loan to calculate debt for.
-     * @return Total debt amount; returns 0 if the book is returned on or before the due date.
+     * @return Total debt amount in cents; returns 0 if the book is returned on or before the due date.
      */
     private long calculateDebt(Loan loan) {
-        long lateDays = ChronoUnit.DAYS.between(loan.getDueDate(), LocalDate.now());
-        if (lateDays > 0) {
-            return lateDays * LATE_FEE_PER_DAY;
-        }
-        return 0;
+        return accruedFee(loan, LocalDate.now(clock));
     }
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+package service;
+
+import metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded, concurrent read-through cache with W-TinyLFU admission and eviction.
+ * New entries enter a small LRU window; entries leaving the window compete with the
+ * least recently used entry of the main segmented LRU, and the one a frequency sketch
+ * considers less popular is evicted. Entries read again in probation are promoted to
+ * the protected segment, so one-off scans cannot flush the popular working set.
+ * <p>
+ * Lookups are lock-free map reads. Policy bookkeeping runs under one lock; a read that
+ * finds the lock busy skips its bookkeeping rather than wait, which only makes recency
+ * and frequency slightly less exact. Capacity is a total weight: one per entry, or
+ * approximate bytes when a weigher is given.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public class LookupCache<K, V> {
+
+    // Share of the capacity used by the admission window and by the protected segment
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.80;
+
+    private enum Region {
+        WINDOW,
+        PROBATION,
+        PROTECTED
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        Region region;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Access-ordered list; the head is the least recently used entry.
+     */
+    private static final class AccessOrder<K, V> {
+        Node<K, V> head;
+        Node<K, V> tail;
+        long weight;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) head = node;
+            else tail.next = node;
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) head = node.next;
+            else node.prev.next = node.next;
+            if (node.next == null) tail = node.prev;
+            else node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final ToIntFunction<? super V> weigher;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+
+    // Bumped by every invalidation; a load that started before one is not cached
+    private volatile long invalidations;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * @param name            Metric name prefix, e.g. "cache.books".
+     * @param maximumWeight   Capacity in weight units.
+     * @param estimatedEntries Expected number of entries at capacity; sizes the frequency sketch.
+     * @param weigher         Weight of a value; use {@code v -> 1} to bound the entry count.
+     * @param metrics         Registry receiving hit, miss and eviction counters.
+     */
+    public LookupCache(String name, long maximumWeight, int estimatedEntries,
+                       ToIntFunction<? super V> weigher, MetricsRegistry metrics) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + maximumWeight);
+        }
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_SHARE));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch(estimatedEntries);
+
+        hits = metrics.counter(name + ".hits");
+        misses = metrics.counter(name + ".misses");
+        evictions = metrics.counter(name + ".evictions");
+        metrics.ratio(name + ".hitRatio", hits, misses);
+        metrics.gauge(name + ".size", data::size);
+    }
+
+    /**
+     * Returns the cached value, or loads and caches it on a miss.
+     * Null results are returned but not cached.
+     *
+     * @param key    Key to look up.
+     * @param loader Reads the value from the backing store.
+     * @return The value, or null if the loader found none.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            hits.increment();
+            if (policyLock.tryLock()) {
+                try {
+                    onAccess(node);
+                } finally {
+                    policyLock.unlock();
+                }
+            }
+            return node.value;
+        }
+
+        misses.increment();
+        long generation = invalidations;
+        V value = loader.apply(key);
+        if (value != null) {
+            add(key, value, generation);
+        }
+        return value;
+    }
+
+    /**
+     * Removes a key so the next lookup reads the backing store.
+     * Loads that were in flight when this is called do not populate the cache.
+     *
+     * @param key Key to invalidate.
+     */
+    public void invalidate(K key) {
+        policyLock.lock();
+        try {
+            invalidations++;
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of cached entries.
+     */
+    public int size() {
+        return data.size();
+    }
+
+    private void add(K key, V value, long generation) {
+        policyLock.lock();
+        try {
+            sketch.increment(key.hashCode());
+            if (generation != invalidations || data.containsKey(key)) {
+                return;
+            }
+            Node<K, V> node = new Node<>(key, value, Math.max(1, weigher.applyAsInt(value)));
+            data.put(key, node);
+            node.region = Region.WINDOW;
+            window.addLast(node);
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Called with the policy lock held
+    private void onAccess(Node<K, V> node) {
+        if (node.region == null) {
+            return; // Already evicted or invalidated
+        }
+        sketch.increment(node.key.hashCode());
+        switch (node.region) {
+            case WINDOW -> window.moveToLast(node);
+            case PROTECTED -> protectedSegment.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.region = Region.PROTECTED;
+                protectedSegment.addLast(node);
+                while (protectedSegment.weight > protectedMaximum && protectedSegment.head != node) {
+                    Node<K, V> demoted = protectedSegment.head;
+                    protectedSegment.remove(demoted);
+                    demoted.region = Region.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+        }
+    }
+
+    // Moves window overflow into probation, then evicts the less popular of candidate and victim
+    private void evict() {
+        while (window.weight > windowMaximum && window.head != null) {
+            Node<K, V> candidate = window.head;
+            window.remove(candidate);
+            candidate.region = Region.PROBATION;
+            probation.addLast(candidate);
+        }
+
+        while (window.weight + probation.weight + protectedSegment.weight > maximumWeight) {
+            Node<K, V> victim = probation.head;
+            Node<K, V> candidate = probation.tail;
+            Node<K, V> evicted;
+            if (victim == null) {
+                evicted = protectedSegment.head != null ? protectedSegment.head : window.head;
+            } else if (victim == candidate) {
+                evicted = victim;
+            } else {
+                evicted = sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                        ? victim : candidate;
+            }
+            data.remove(evicted.key, evicted);
+            unlink(evicted);
+            evictions.increment();
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> protectedSegment.remove(node);
+        }
+        node.region = null;
+    }
+}
@@ -0,0 +1,413 @@
+package service;
+
+import model.Book;
+import model.enums.Status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Catalog backed by a memory-mapped {@link CatalogSegment} plus an in-heap delta.
+ * Books from the segment are read straight from the mapped file; only their copy counters
+ * live on the heap, as two int columns that start zeroed. Books added after the segment was
+ * written go to a {@link ColumnarLibrary} delta. Snapshots refer to the segment by its id and
+ * store only the delta and the changed copy counts; recovery folds them into a new segment once
+ * they grow large, see {@link CatalogSegment#writeMerged}. Listings merge both parts by the same
+ * keys the other engines use for their cursors, so paging works across them.
+ */
+public class MappedLibrary implements Library {
+
+    // Replaced only by mapSegment, before the library is shared
+    private CatalogSegment segment;
+
+    // Copies added to segment books since the segment was written (negative if removed)
+    private AtomicIntegerArray addedCopies;
+
+    // Copies of segment books currently lent out
+    private AtomicIntegerArray lentCopies;
+
+    // Books that are not in the segment yet
+    private final ColumnarLibrary delta = new ColumnarLibrary();
+
+    // Notified after each successful mutation
+    private volatile LibraryEventListener listener = LibraryEventListener.NONE;
+
+    // Held from each mutation until its listener has been notified; shared with the delta
+    private volatile MutationGate gate = MutationGate.NONE;
+
+    /**
+     * @param segment Mapped catalog segment; use {@link CatalogSegment#empty()} to start without one.
+     */
+    public MappedLibrary(CatalogSegment segment) {
+        this.segment = segment;
+        this.addedCopies = new AtomicIntegerArray(segment.size());
+        this.lentCopies = new AtomicIntegerArray(segment.size());
+    }
+
+    /**
+     * Replaces the empty segment this library was created with. Used by recovery, which learns
+     * from the snapshot which segment to map; must run before the library is shared with other threads.
+     *
+     * @param segment Mapped catalog segment.
+     * @throws IllegalStateException If the library already holds books.
+     */
+    public void mapSegment(CatalogSegment segment) {
+        if (this.segment.size() > 0 || !delta.list().isEmpty()) {
+            throw new IllegalStateException("Catalog segment can only be mapped into an empty library");
+        }
+        this.segment = segment;
+        this.addedCopies = new AtomicIntegerArray(segment.size());
+        this.lentCopies = new AtomicIntegerArray(segment.size());
+    }
+
+    /**
+     * @return The mapped segment.
+     */
+    public CatalogSegment segment() {
+        return segment;
+    }
+
+    /**
+     * @param id Segment record id.
+     * @return Copies added to the record since the segment was written.
+     */
+    public int addedCopies(int id) {
+        return addedCopies.get(id);
+    }
+
+    /**
+     * Re-adds persisted copies of a segment record without notifying the listener.
+     *
+     * @param id     Segment record id.
+     * @param copies Copies added to the record since the segment was written.
+     */
+    public void restoreAddedCopies(int id, int copies) {
+        addedCopies.set(id, copies);
+    }
+
+    /**
+     * @return Books that are not in the segment, in insertion order.
+     */
+    public List<Book> added() {
+        return delta.list();
+    }
+
+    @Override
+    public Book create(String title, String author, String isbn) {
+        return delta.create(title, author, isbn);
+    }
+
+    @Override
+    public Book create(String title, String author, String isbn, int copies) {
+        return delta.create(title, author, isbn, copies);
+    }
+
+    @Override
+    public Book addCopies(String isbn, int copies) {
+        int id = find(isbn);
+        if (id < 0) {
+            return delta.addCopies(isbn, copies);
+        }
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            Book book = view(id);
+            book.addCopies(copies);
+            listener.copiesAdded(book, copies);
+            return book;
+        } finally {
+            gate.exit();
+        }
+    }
+
+    /**
+     * Re-adds a persisted book. Books already in the segment only get their copy count
+     * adjusted, so recovery does not copy the catalog onto the heap.
+     */
+    @Override
+    public Book restore(String title, String author, String isbn, int copies) {
+        int id = find(isbn);
+        if (id < 0) {
+            return delta.restore(title, author, isbn, copies);
+        }
+        addedCopies.set(id, copies - segment.copies(id));
+        return view(id);
+    }
+
+    @Override
+    public void setEventListener(LibraryEventListener listener) {
+        this.listener = listener == null ? LibraryEventListener.NONE : listener;
+        delta.setEventListener(listener);
+    }
+
+    @Override
+    public void setMutationGate(MutationGate gate) {
+        this.gate = gate == null ? MutationGate.NONE : gate;
+        delta.setMutationGate(gate);
+    }
+
+    @Override
+    public boolean addIsbn(String isbn) {
+        return find(isbn) < 0 && delta.addIsbn(isbn);
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        int id = find(isbn);
+        return id >= 0 ? view(id) : delta.findBookByIsbn(isbn);
+    }
+
+    /**
+     * Returns the segment books in ISBN order followed by the delta in insertion order.
+     * Views are materialized as elements are read.
+     */
+    @Override
+    public List<Book> list() {
+        List<Book> added = delta.list();
+        int segmentSize = segment.size();
+        return new AbstractList<>() {
+            @Override
+            public Book get(int index) {
+                Objects.checkIndex(index, size());
+                return index < segmentSize ? view(index) : added.get(index - segmentSize);
+            }
+
+            @Override
+            public int size() {
+                return segmentSize + added.size();
+            }
+        };
+    }
+
+    /**
+     * Searches the mapped titles and authors, then the delta.
+     *
+     * @param title One or more keywords to search for
+     * @return Matching segment books in ISBN order, followed by matching delta books
+     */
+    @Override
+    public List<Book> findBookByTitle(String title) {
+        List<Book> found = new ArrayList<>();
+        if (title == null || title.isBlank()) {
+            return found;
+        }
+        String[] keywords = title.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        byte[][] needles = new byte[keywords.length][];
+        for (int k = 0; k < keywords.length; k++) {
+            needles[k] = keywords[k].getBytes(StandardCharsets.UTF_8);
+        }
+
+        // Author matches are computed once per distinct author: row authorKey * keywords.length
+        // holds whether the author matched each keyword, once authorChecked is set for the key
+        boolean[] authorChecked = new boolean[segment.authorCount()];
+        boolean[] authorMatches = new boolean[segment.authorCount() * keywords.length];
+        for (int id = 0; id < segment.size(); id++) {
+            int author = segment.authorKey(id);
+            int row = author * keywords.length;
+            if (!authorChecked[author]) {
+                String name = segment.author(id).toLowerCase(Locale.ROOT);
+                for (int k = 0; k < keywords.length; k++) {
+                    authorMatches[row + k] = name.contains(keywords[k]);
+                }
+                authorChecked[author] = true;
+            }
+
+            boolean all = true;
+            for (int k = 0; k < keywords.length && all; k++) {
+                all = authorMatches[row + k] || segment.titleContains(id, keywords[k], needles[k]);
+            }
+            if (all) {
+                found.add(view(id));
+            }
+        }
+        found.addAll(delta.findBookByTitle(title));
+        return found;
+    }
+
+    /**
+     * Returns one page of books, merging the segment and the delta in key order.
+     *
+     * @param sort     Sort order.
+     * @param status   Only books with this status are returned; null for all books.
+     * @param cursor   Cursor from the previous page, or null for the first page.
+     * @param pageSize Maximum number of books on the page.
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed
+     */
+    @Override
+    public Page<Book> list(BookSort sort, Status status, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        String after = Page.decodeCursor(cursor);
+
+        // One extra book from each side tells whether another page follows
+        List<Book> fromSegment = segmentPage(sort, status, after, pageSize + 1);
+        List<Book> fromDelta = delta.list(sort, status, cursor, pageSize + 1).items();
+
+        List<Book> items = new ArrayList<>(pageSize);
+        int i = 0, j = 0;
+        String lastKey = null;
+        while (items.size() < pageSize && (i < fromSegment.size() || j < fromDelta.size())) {
+            Book next;
+            if (j == fromDelta.size() || i < fromSegment.size()
+                    && sort.cursorKey(fromSegment.get(i)).compareTo(sort.cursorKey(fromDelta.get(j))) <= 0) {
+                next = fromSegment.get(i++);
+            } else {
+                next = fromDelta.get(j++);
+            }
+            items.add(next);
+            lastKey = sort.cursorKey(next);
+        }
+        boolean more = i < fromSegment.size() || j < fromDelta.size();
+        return new Page<>(items, more ? Page.encodeCursor(lastKey) : null);
+    }
+
+    // Walks the segment in the requested order from the cursor and collects up to limit books
+    private List<Book> segmentPage(BookSort sort, Status status, String after, int limit) {
+        List<Book> items = new ArrayList<>(limit);
+        int size = segment.size();
+        if (sort == BookSort.TITLE) {
+            int from = 0;
+            if (after != null) {
+                int low = 0, high = size;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (titleKey(segment.titleOrder(mid)).compareTo(after) <= 0) low = mid + 1;
+                    else high = mid;
+                }
+                from = low;
+            }
+            for (int position = from; position < size && items.size() < limit; position++) {
+                int id = segment.titleOrder(position);
+                if (status == null || statusOf(id) == status) items.add(view(id));
+            }
+            return items;
+        }
+
+        if (sort == BookSort.ISBN) {
+            int from = after == null ? 0 : segment.firstAfter(parseIsbn(after));
+            for (int id = from; id < size && items.size() < limit; id++) {
+                if (status == null || statusOf(id) == status) items.add(view(id));
+            }
+            return items;
+        }
+
+        int startPhase = 0;
+        long afterIsbn = ISBNValidator.INVALID;
+        if (after != null) {
+            int separator = after.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            startPhase = Page.decodeStatusPhase(after.substring(0, separator));
+            afterIsbn = parseIsbn(after.substring(separator + 1));
+        }
+        Status[] phases = Status.values();
+        for (int phase = startPhase; phase < phases.length && items.size() < limit; phase++) {
+            if (status != null && phases[phase] != status) continue;
+            int from = phase == startPhase && afterIsbn != ISBNValidator.INVALID ? segment.firstAfter(afterIsbn) : 0;
+            for (int id = from; id < size && items.size() < limit; id++) {
+                if (statusOf(id) == phases[phase]) items.add(view(id));
+            }
+        }
+        return items;
+    }
+
+    private String titleKey(int id) {
+        return segment.title(id).toLowerCase(Locale.ROOT) + '\u0000' + ISBNValidator.unpack(segment.isbn(id));
+    }
+
+    private static long parseIsbn(String cursorIsbn) {
+        long packed = ISBNValidator.pack(cursorIsbn);
+        if (packed == ISBNValidator.INVALID) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return packed;
+    }
+
+    private int find(String isbn) {
+        long packed = ISBNValidator.pack(isbn);
+        return packed == ISBNValidator.INVALID ? -1 : segment.find(packed);
+    }
+
+    private int copiesOf(int id) {
+        return segment.copies(id) + addedCopies.get(id);
+    }
+
+    private Status statusOf(int id) {
+        return copiesOf(id) - lentCopies.get(id) > 0 ? Status.AVAILABLE : Status.UNAVAILABLE;
+    }
+
+    private Book view(int id) {
+        return new View(id, segment.title(id), segment.author(id), ISBNValidator.unpack(segment.isbn(id)));
+    }
+
+    /**
+     * Book read from the segment. Copy counters live in this library's heap columns,
+     * so every view of the record sees the same availability.
+     */
+    private final class View extends Book {
+        private final int id;
+
+        View(int id, String title, String author, String isbn) {
+            super(title, author, isbn, Counters.EXTERNAL);
+            this.id = id;
+        }
+
+        @Override
+        public int getCopies() {
+            return copiesOf(id);
+        }
+
+        @Override
+        public int getAvailableCopies() {
+            return copiesOf(id) - lentCopies.get(id);
+        }
+
+        @Override
+        public Status getStatus() {
+            return statusOf(id);
+        }
+
+        @Override
+        public boolean tryCheckOutCopy() {
+            int lent;
+            do {
+                lent = lentCopies.get(id);
+                if (lent >= copiesOf(id)) {
+                    return false;
+                }
+            } while (!lentCopies.compareAndSet(id, lent, lent + 1));
+            return true;
+        }
+
+        @Override
+        public void returnCopy() {
+            lentCopies.decrementAndGet(id);
+        }
+
+        @Override
+        public void addCopies(int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Copies to add must be positive: " + count);
+            }
+            addedCopies.addAndGet(id, count);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof View view && view.id == id && view.owner() == MappedLibrary.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(id);
+        }
+
+        private MappedLibrary owner() {
+            return MappedLibrary.this;
+        }
+    }
+}
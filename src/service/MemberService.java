@@ -1,18 +1,78 @@
 package service;
 
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import model.LedgerEntry;
 import model.Member;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 /**
  * Manages library members: adding, listing, and searching by email.
+ * Methods return their results instead of printing.
  */
 public class MemberService {
 
     // Holds all members registered in the system
     private final List<Member> members = new ArrayList<>();
 
+    // Index from normalized email to member for uniqueness checks and lock-free lookups
+    private final Map<String, Member> membersByEmail = new ConcurrentHashMap<>();
+
+    // Members ordered by normalized email for keyset-paginated listings
+    private final NavigableMap<String, Member> membersByEmailOrder = new ConcurrentSkipListMap<>();
+
+    // Normalized emails of members being created; reserved before the registered check
+    private final Set<String> pendingEmails = ConcurrentHashMap.newKeySet();
+
+    // Notified after each successful mutation
+    private volatile LibraryEventListener listener = LibraryEventListener.NONE;
+
+    // Held from each mutation until its listener has been notified
+    private volatile MutationGate gate = MutationGate.NONE;
+
+    // Source of "today" for payment dates
+    private final Clock clock;
+
+    // Hot-path metrics, resolved once so recording does not look anything up
+    private final LatencyHistogram emailLookupLatency;
+    private final LongAdder emailHits;
+    private final LongAdder emailMisses;
+    private final LongAdder duplicateEmails;
+
+    public MemberService() {
+        this(new MetricsRegistry());
+    }
+
+    /**
+     * @param metrics Registry receiving lookup counters and latency histograms.
+     */
+    public MemberService(MetricsRegistry metrics) {
+        this(metrics, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param metrics Registry receiving lookup counters and latency histograms.
+     * @param clock   Source of the current date for payments.
+     */
+    public MemberService(MetricsRegistry metrics, Clock clock) {
+        this.clock = clock;
+        emailLookupLatency = metrics.histogram("member.findByEmail.latency");
+        emailHits = metrics.counter("member.findByEmail.hits");
+        emailMisses = metrics.counter("member.findByEmail.misses");
+        metrics.ratio("member.findByEmail.hitRatio", emailHits, emailMisses);
+        duplicateEmails = metrics.counter("member.create.duplicateEmail");
+        metrics.gauge("member.count", membersByEmail::size);
+    }
+
     /**
      * Creates and adds a new member if email is unique.
      *
@@ -21,61 +81,244 @@ public class MemberService {
      * @param email   Member's email (must be unique).
      * @param mpNo    Mobile phone number.
      * @param address Member's address.
+     * @return The new member, or null if the email is already registered.
      */
-    public void create(String name, String surname, String email, String mpNo, String address) {
+    public Member create(String name, String surname, String email, String mpNo, String address) {
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            // Check if email already exists (case-insensitive)
+            String key = normalizeEmail(email);
+            if (!reserve(key)) {
+                duplicateEmails.increment();
+                return null;
+            }
 
-        // Check if email already exists (case-insensitive)
-        for (Member member : members){
-            if (member.getEmail().equals(email)) {
-                System.out.println("Email already registered!");
-                return;
+            // The listener is told before the member is indexed, outside the monitor, so
+            // nothing can act on the member before its creation has been published
+            Member member = new Member(name, surname, email, mpNo, address);
+            try {
+                listener.memberCreated(member);
+                synchronized (this) {
+                    index(key, member);
+                }
+            } finally {
+                pendingEmails.remove(key);
             }
+            return member;
+        } finally {
+            gate.exit();
         }
+    }
 
-        Member member = new Member(name, surname, email, mpNo, address);
+    /**
+     * Adds many members in one pass.
+     * Each record is {name, surname, email, mobile phone, address}. Emails are
+     * deduplicated case-insensitively against existing members and the batch itself.
+     *
+     * @param records Member records to import.
+     * @return Number of imported members and the rejected rows with reasons.
+     */
+    public ImportResult bulkCreate(Stream<String[]> records) {
+        // Read the records before entering the gate, so a slow file does not hold back snapshots
+        List<String[]> rows = records.toList();
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            return bulkCreate(rows);
+        } finally {
+            gate.exit();
+        }
+    }
+
+    private ImportResult bulkCreate(List<String[]> rows) {
+        ImportResult result = new ImportResult();
+        Map<String, Member> added = new LinkedHashMap<>();
+        long row = 0;
+
+        for (String[] fields : rows) {
+            row++;
+            if (fields.length < 5) {
+                result.addError(row, "Expected name, surname, email, mobile phone and address");
+                continue;
+            }
+
+            String key = normalizeEmail(fields[2]);
+            if (key.isEmpty() || key.indexOf('@') < 0) {
+                result.addError(row, "Invalid email: " + fields[2]);
+            } else if (added.containsKey(key) || !reserve(key)) {
+                result.addError(row, "Email already registered: " + fields[2]);
+            } else {
+                added.put(key, new Member(fields[0].trim(), fields[1].trim(), fields[2].trim(),
+                        fields[3].trim(), fields[4].trim()));
+            }
+        }
+
+        // Publish the batch, then build indexes once for all of it
+        try {
+            for (Member member : added.values()) {
+                listener.memberCreated(member);
+            }
+            synchronized (this) {
+                members.addAll(added.values());
+                membersByEmail.putAll(added);
+                membersByEmailOrder.putAll(added);
+            }
+        } finally {
+            pendingEmails.removeAll(added.keySet());
+        }
+        result.setImported(added.size());
+        return result;
+    }
+
+    // Claims an email for a member being created; false if it is registered or being registered.
+    // The claim comes first, so a creation that finishes in between is seen by the registered check.
+    private boolean reserve(String key) {
+        if (!pendingEmails.add(key)) {
+            return false;
+        }
+        if (membersByEmail.containsKey(key)) {
+            pendingEmails.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    private void index(String key, Member member) {
         members.add(member);
-        System.out.println("Member successfully added!");
+        membersByEmail.put(key, member);
+        membersByEmailOrder.put(key, member);
     }
 
     /**
-     * Lists all registered members.
-     * Prints message if no members are found.
+     * Imports members from a CSV or TSV file with the columns name, surname, email, mobile phone, address.
+     *
+     * @param path       File to import.
+     * @param skipHeader If true, the first line is treated as a header.
+     * @return Number of imported members and the rejected rows with reasons.
+     * @throws IOException If the file cannot be read.
      */
-    public void list() {
-        if (members.isEmpty()) {
-            System.out.println("No members found.");
-            return;
+    public ImportResult importFile(Path path, boolean skipHeader) throws IOException {
+        try (Stream<String[]> records = DelimitedRecords.read(path, skipHeader)) {
+            return bulkCreate(records);
         }
+    }
 
-        for (Member member : members) {
-            System.out.println(member);
-        }
+    /**
+     * Re-adds a previously persisted member without notifying the listener.
+     * Used during recovery.
+     *
+     * @param name    Member's first name.
+     * @param surname Member's surname.
+     * @param email   Member's email.
+     * @param mpNo    Mobile phone number.
+     * @param address Member's address.
+     * @return The restored member; its ledger is restored separately.
+     */
+    public synchronized Member restore(String name, String surname, String email, String mpNo, String address) {
+        Member member = new Member(name, surname, email, mpNo, address);
+        index(normalizeEmail(email), member);
+        return member;
     }
 
     /**
-     * Finds a member by email.
-     * Optionally prints the member details.
+     * Records a payment against a member's debt, dated from the service clock.
      *
-     * @param email Email to search for.
-     * @param print If true, prints the found member.
-     * @return Found Member or null if none found.
+     * @param member      The paying member.
+     * @param amountCents Amount paid in cents; must be positive and not exceed the outstanding balance.
+     * @return The remaining balance in cents.
+     * @throws IllegalArgumentException If the amount is not positive or exceeds the balance.
      */
-    public Member findMemberByEmail(String email, boolean print) {
-        Member foundMember = null;
-
-        for (Member member : members) {
-            if (member.getEmail().equals(email)) {
-                foundMember = member;
-                if (print) {
-                    System.out.println(member);
+    public long recordPayment(Member member, long amountCents) {
+        MutationGate gate = this.gate;
+        gate.enter();
+        try {
+            LedgerEntry payment;
+            synchronized (member) {
+                if (amountCents <= 0) {
+                    throw new IllegalArgumentException("Payment must be positive");
+                }
+                if (amountCents > member.getBalanceCents()) {
+                    throw new IllegalArgumentException("Payment exceeds the outstanding debt of "
+                            + LedgerEntry.formatCents(member.getBalanceCents()));
                 }
-                break;
+                payment = new LedgerEntry(LedgerEntry.Type.PAYMENT, amountCents, LocalDate.now(clock), "Payment");
+                member.record(payment);
             }
+            listener.paymentRecorded(member, payment);
+            return member.getBalanceCents();
+        } finally {
+            gate.exit();
+        }
+    }
+
+    public void setEventListener(LibraryEventListener listener) {
+        this.listener = listener == null ? LibraryEventListener.NONE : listener;
+    }
+
+    public void setMutationGate(MutationGate gate) {
+        this.gate = gate == null ? MutationGate.NONE : gate;
+    }
+
+    /**
+     * Returns all registered members in registration order.
+     *
+     * @return Unmodifiable copy of the member list; empty if there are no members.
+     */
+    public synchronized List<Member> list() {
+        return List.copyOf(members);
+    }
+
+    /**
+     * Returns one page of members ordered by email, walking the ordered index
+     * lazily from the cursor so memory use is bounded by the page size.
+     *
+     * @param cursor   Cursor from the previous page, or null for the first page.
+     * @param pageSize Maximum number of members on the page.
+     * @return The page and the cursor for the next one.
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed.
+     */
+    public Page<Member> list(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
         }
+        String after = Page.decodeCursor(cursor);
+        NavigableMap<String, Member> tail = after == null ? membersByEmailOrder : membersByEmailOrder.tailMap(after, false);
 
-        if (foundMember == null) {
-            System.out.println("No members found with email: " + email);
+        List<Member> items = new ArrayList<>(pageSize);
+        String lastKey = null;
+        for (Map.Entry<String, Member> entry : tail.entrySet()) {
+            if (items.size() == pageSize) {
+                return new Page<>(items, Page.encodeCursor(lastKey));
+            }
+            items.add(entry.getValue());
+            lastKey = entry.getKey();
         }
-        return foundMember;
+        return new Page<>(items, null);
+    }
+
+    /**
+     * Finds a member by email (case-insensitive).
+     *
+     * @param email Email to search for.
+     * @return Found Member or null if none found.
+     */
+    public Member findMemberByEmail(String email) {
+        long start = System.nanoTime();
+        Member member = membersByEmail.get(normalizeEmail(email));
+        emailLookupLatency.record(System.nanoTime() - start);
+        (member != null ? emailHits : emailMisses).increment();
+        return member;
+    }
+
+    /**
+     * Normalizes an email by trimming surrounding whitespace and converting to lowercase.
+     *
+     * @param email Raw email string.
+     * @return Normalized email string.
+     */
+    public String normalizeEmail(String email) {
+        if (email == null) return "";
+        return email.trim().toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,67 @@
+package service;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Lets mutations run concurrently with each other but not with a capture of the state.
+ * Services hold the gate from applying a mutation until its listeners have been notified,
+ * so a capture taken while the gate is closed sees exactly the mutations whose events have
+ * been delivered, and none that are half done.
+ */
+public final class MutationGate {
+
+    /**
+     * Gate that never closes; used when nothing needs consistent captures.
+     */
+    public static final MutationGate NONE = new MutationGate(false);
+
+    // Shared by mutations, exclusive for captures; null for NONE
+    private final ReentrantReadWriteLock lock;
+
+    public MutationGate() {
+        this(true);
+    }
+
+    private MutationGate(boolean enabled) {
+        this.lock = enabled ? new ReentrantReadWriteLock() : null;
+    }
+
+    /**
+     * Marks the start of a mutation; waits while a capture is running.
+     * Every call must be paired with {@link #exit()} in a finally block.
+     */
+    public void enter() {
+        if (lock != null) {
+            lock.readLock().lock();
+        }
+    }
+
+    /**
+     * Marks the end of a mutation started with {@link #enter()}.
+     */
+    public void exit() {
+        if (lock != null) {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the running mutations to finish, holds new ones back and runs the capture.
+     * Must not be called from inside a mutation.
+     *
+     * @param capture Reads the state; should copy it and return quickly.
+     * @return The capture's result.
+     */
+    public <T> T closeFor(Supplier<T> capture) {
+        if (lock == null) {
+            return capture.get();
+        }
+        lock.writeLock().lock();
+        try {
+            return capture.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
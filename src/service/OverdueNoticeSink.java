@@ -0,0 +1,46 @@
+package service;
+
+import model.LedgerEntry;
+import model.Loan;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Receives a notice for each loan that has just become overdue.
+ */
+public interface OverdueNoticeSink {
+
+    /**
+     * @param loan       The overdue loan.
+     * @param today      The date the notice is issued.
+     * @param accruedFeeCents Late fee accrued so far, in cents.
+     */
+    void overdue(Loan loan, LocalDate today, long accruedFeeCents);
+
+    /**
+     * Returns a sink that appends one line per notice to a text file.
+     *
+     * @param path File to append to; created if missing.
+     * @return The file sink.
+     */
+    static OverdueNoticeSink appendingTo(Path path) {
+        return (loan, today, accruedFeeCents) -> {
+            String line = today + " OVERDUE member=" + loan.getMember().getEmail()
+                    + " isbn=" + loan.getBook().getIsbn()
+                    + " due=" + loan.getDueDate()
+                    + " fee=" + LedgerEntry.formatCents(accruedFeeCents) + System.lineSeparator();
+            try {
+                Files.writeString(path, line, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write overdue notice", e);
+            }
+        };
+    }
+}
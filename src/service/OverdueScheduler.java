@@ -0,0 +1,152 @@
+package service;
+
+import model.Loan;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues overdue notices once a day.
+ * Each run only visits loans whose due date was crossed since the previous run,
+ * using the due-date index in {@link LoanService}, so the cost scales with the
+ * number of loans becoming overdue rather than with all open loans.
+ * Late fees accrue by date and are charged on return; notices report the fee accrued so far.
+ * Each run also expires holds whose pickup window has passed.
+ * With a state file, the date processed up to is saved after every run and loaded by
+ * {@link #recover()}, so a restart does not repeat notices already issued. A crash between
+ * issuing a run's notices and saving the date repeats only that run's notices.
+ */
+public class OverdueScheduler implements Closeable {
+
+    private final LoanService loanService;
+    private final OverdueNoticeSink sink;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "overdue-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Loans due before this date have already been processed
+    private LocalDate processedUntil;
+
+    // File processedUntil is saved to after each run, or null to keep it in memory only
+    private final Path stateFile;
+
+    /**
+     * @param loanService    Source of open loans.
+     * @param sink           Receives the overdue notices.
+     * @param processedUntil Loans due before this date are considered already notified;
+     *                       use {@link LocalDate#MIN} to notify every overdue loan on the first run.
+     */
+    public OverdueScheduler(LoanService loanService, OverdueNoticeSink sink, LocalDate processedUntil) {
+        this(loanService, sink, processedUntil, null);
+    }
+
+    /**
+     * Keeps the processed-until date in a file across restarts. Call {@link #recover()} before
+     * the first run; without a saved date every overdue loan is notified once.
+     *
+     * @param loanService Source of open loans.
+     * @param sink        Receives the overdue notices.
+     * @param stateFile   File holding the processed-until date; created by the first run.
+     */
+    public OverdueScheduler(LoanService loanService, OverdueNoticeSink sink, Path stateFile) {
+        this(loanService, sink, LocalDate.MIN, stateFile);
+    }
+
+    private OverdueScheduler(LoanService loanService, OverdueNoticeSink sink, LocalDate processedUntil, Path stateFile) {
+        this.loanService = loanService;
+        this.sink = sink;
+        this.processedUntil = processedUntil;
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Loads the processed-until date saved by a previous run, if there is one.
+     *
+     * @throws IOException If the state file cannot be read or does not hold a date.
+     */
+    public synchronized void recover() throws IOException {
+        if (stateFile == null || !Files.exists(stateFile)) {
+            return;
+        }
+        String saved = Files.readString(stateFile, StandardCharsets.UTF_8).trim();
+        try {
+            processedUntil = LocalDate.parse(saved);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Malformed overdue state in " + stateFile + ": " + saved, e);
+        }
+    }
+
+    /**
+     * Notifies every loan that became overdue since the last run.
+     * A loan is overdue once its due date is before today. Holds not picked up
+     * by their deadline are expired in the same run.
+     *
+     * @param today The current date.
+     * @return Number of notices issued.
+     */
+    public synchronized int runFor(LocalDate today) {
+        List<Loan> crossed = loanService.findLoansDueBetween(processedUntil, today);
+        for (Loan loan : crossed) {
+            sink.overdue(loan, today, loanService.accruedFee(loan, today));
+        }
+        if (today.isAfter(processedUntil)) {
+            processedUntil = today;
+            save();
+        }
+        loanService.expireHolds(today);
+        return crossed.size();
+    }
+
+    /**
+     * Runs once immediately and then shortly after every midnight.
+     */
+    public void start() {
+        executor.execute(this::runToday);
+        LocalDateTime now = LocalDateTime.now();
+        long untilMidnight = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis();
+        executor.scheduleAtFixedRate(this::runToday, untilMidnight + 1_000, TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Replaces the state file in one step, so a crash leaves either the old or the new date
+    private void save() {
+        if (stateFile == null) {
+            return;
+        }
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try {
+            Files.writeString(tmp, processedUntil.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save overdue state", e);
+        }
+    }
+
+    private void runToday() {
+        try {
+            runFor(LocalDate.now(loanService.getClock()));
+        } catch (RuntimeException e) {
+            // Keep the schedule alive; the same loans are retried on the next run
+            System.err.println("Overdue processing failed: " + e.getMessage());
+        }
+    }
+}
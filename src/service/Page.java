@@ -0,0 +1,58 @@
+package service;
+
+import model.enums.Status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * @param items      Records on this page, in listing order.
+ * @param nextCursor Opaque cursor for the following page, or null if this is the last page.
+ * @param <T>        Record type.
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    // Encodes the sort key of the last item on a page as an opaque, URL-safe cursor
+    static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(String)}.
+     *
+     * @param cursor Cursor from a previous page, or null for the first page.
+     * @return The sort key to continue after, or null.
+     * @throws IllegalArgumentException If the cursor is malformed.
+     */
+    static String decodeCursor(String cursor) {
+        if (cursor == null) return null;
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the status ordinal that prefixes a status-ordered cursor key.
+     *
+     * @param phase Text before the separator of the cursor key.
+     * @return The status ordinal to continue from.
+     * @throws IllegalArgumentException If the text is not a valid status ordinal.
+     */
+    static int decodeStatusPhase(String phase) {
+        int ordinal;
+        try {
+            ordinal = Integer.parseInt(phase);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        if (ordinal < 0 || ordinal >= Status.values().length) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,372 @@
+package service;
+
+import metrics.MetricsRegistry;
+import model.Book;
+import model.enums.Status;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Catalog partitioned by ISBN hash into independent {@link BookService} shards.
+ * Each shard has one writer thread: creates, restores and copy changes are queued to the
+ * owning shard's writer, which drains everything queued since its last pass and runs it as one
+ * batch, so a burst of writes costs one wake-up and writers to different shards never share a
+ * lock. ISBN reservations, lookups by ISBN and title searches go straight to the shards without
+ * a queue hop, and check-outs only touch the book's own copy counter, so reads and loans for
+ * different ISBNs proceed in parallel.
+ * <p>
+ * Bulk imports are split by shard and handed to every shard as one batch. Title searches and
+ * listings fan out to all shards; searches merge the shard results by match score and keyset
+ * listings merge the shard pages by the shared cursor key.
+ */
+public class ShardedLibrary implements Library, Closeable {
+
+    // Most queued writes a shard writer runs in one pass
+    private static final int MAX_WRITE_BATCH = 256;
+
+    private final BookService[] shards;
+    private final ShardWriter[] writers;
+
+    /**
+     * @param shardCount Number of shards; usually the number of cores.
+     * @param metrics    Registry shared by the shards' lookup metrics.
+     * @throws IllegalArgumentException If the shard count is not positive.
+     */
+    public ShardedLibrary(int shardCount, MetricsRegistry metrics) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        shards = new BookService[shardCount];
+        writers = new ShardWriter[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new BookService(metrics);
+            writers[i] = new ShardWriter(shards[i], "catalog-shard-" + i);
+        }
+        // Replaces the per-shard gauge each BookService registered under the same name
+        metrics.gauge("book.count", () -> Arrays.stream(shards).mapToLong(BookService::size).sum());
+    }
+
+    @Override
+    public Book create(String title, String author, String isbn) {
+        return create(title, author, isbn, 1);
+    }
+
+    @Override
+    public Book create(String title, String author, String isbn, int copies) {
+        return write(isbn, shard -> shard.create(title, author, isbn, copies));
+    }
+
+    @Override
+    public Book addCopies(String isbn, int copies) {
+        return write(isbn, shard -> shard.addCopies(isbn, copies));
+    }
+
+    @Override
+    public Book restore(String title, String author, String isbn, int copies) {
+        return write(isbn, shard -> shard.restore(title, author, isbn, copies));
+    }
+
+    // The ISBN set is concurrent, so reservations need no writer
+    @Override
+    public boolean addIsbn(String isbn) {
+        return shardOf(isbn).addIsbn(isbn);
+    }
+
+    /**
+     * Adds many books, importing each shard's part as one batch on that shard's writer.
+     * Row numbers in the result refer to the input order.
+     *
+     * @param records Book records {title, author, isbn[, copies]}.
+     * @return Number of imported books and the rejected rows with reasons.
+     */
+    public ImportResult bulkCreate(Stream<String[]> records) {
+        List<String[]> rows = records.toList();
+        List<List<Integer>> rowsByShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            rowsByShard.add(new ArrayList<>());
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            String[] record = rows.get(row);
+            rowsByShard.get(record.length >= 3 ? shardIndex(record[2]) : 0).add(row);
+        }
+
+        List<Future<ImportResult>> batches = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            List<String[]> batch = rowsByShard.get(i).stream().map(rows::get).toList();
+            batches.add(writers[i].submit(shard -> shard.bulkCreate(batch.stream())));
+        }
+
+        int imported = 0;
+        List<ImportResult.RowError> errors = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            ImportResult part = await(batches.get(i));
+            imported += part.getImported();
+            for (ImportResult.RowError error : part.getErrors()) {
+                // Shard results number rows within the batch, starting at 1
+                int row = rowsByShard.get(i).get((int) error.row() - 1);
+                errors.add(new ImportResult.RowError(row + 1, error.message()));
+            }
+        }
+
+        ImportResult result = new ImportResult();
+        errors.sort(Comparator.comparingLong(ImportResult.RowError::row));
+        for (ImportResult.RowError error : errors) {
+            result.addError(error.row(), error.message());
+        }
+        result.setImported(imported);
+        return result;
+    }
+
+    @Override
+    public void setEventListener(LibraryEventListener listener) {
+        for (BookService shard : shards) {
+            shard.setEventListener(listener);
+        }
+    }
+
+    @Override
+    public void setMutationGate(MutationGate gate) {
+        for (BookService shard : shards) {
+            shard.setMutationGate(gate);
+        }
+    }
+
+    @Override
+    public Book findBookByIsbn(String isbn) {
+        return shardOf(isbn).findBookByIsbn(isbn);
+    }
+
+    /**
+     * Searches every shard in parallel and ranks the results together.
+     *
+     * @param title One or more keywords to search for (case-insensitive)
+     * @return Matching books, best match first across all shards
+     */
+    @Override
+    public List<Book> findBookByTitle(String title) {
+        List<BookSearchIndex.Match> matches = new ArrayList<>(Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.rankByTitle(title).stream())
+                .toList());
+        // Stable, so equal scores keep each shard's insertion order
+        matches.sort(Comparator.comparingInt(BookSearchIndex.Match::score).reversed());
+        List<Book> result = new ArrayList<>(matches.size());
+        for (BookSearchIndex.Match match : matches) {
+            result.add(match.book());
+        }
+        return result;
+    }
+
+    /**
+     * Returns all books, shard by shard, each shard in insertion order.
+     */
+    @Override
+    public List<Book> list() {
+        List<List<Book>> parts = Arrays.stream(shards).map(BookService::list).toList();
+        return new AbstractList<>() {
+            @Override
+            public Book get(int index) {
+                Objects.checkIndex(index, size());
+                for (List<Book> part : parts) {
+                    if (index < part.size()) {
+                        return part.get(index);
+                    }
+                    index -= part.size();
+                }
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (List<Book> part : parts) {
+                    size += part.size();
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns one page of books, merging one page from every shard in key order.
+     *
+     * @param sort     Sort order.
+     * @param status   Only books with this status are returned; null for all books.
+     * @param cursor   Cursor from the previous page, or null for the first page.
+     * @param pageSize Maximum number of books on the page.
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException If the page size is not positive or the cursor is malformed
+     */
+    @Override
+    public Page<Book> list(BookSort sort, Status status, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        // Each shard page is sorted; a heap of shard heads yields the global order
+        PriorityQueue<PageHead> heads = new PriorityQueue<>(Comparator.comparing(PageHead::key));
+        for (BookService shard : shards) {
+            List<Book> items = shard.list(sort, status, cursor, pageSize + 1).items();
+            if (!items.isEmpty()) {
+                heads.add(PageHead.at(sort, items, 0));
+            }
+        }
+
+        List<Book> items = new ArrayList<>(pageSize);
+        String lastKey = null;
+        while (items.size() < pageSize && !heads.isEmpty()) {
+            PageHead head = heads.poll();
+            items.add(head.book());
+            lastKey = head.key();
+            if (head.position() + 1 < head.items().size()) {
+                heads.add(PageHead.at(sort, head.items(), head.position() + 1));
+            }
+        }
+        return new Page<>(items, heads.isEmpty() ? null : Page.encodeCursor(lastKey));
+    }
+
+    /**
+     * @return Number of shards.
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Stops the shard writers after the writes already queued have run.
+     */
+    @Override
+    public void close() {
+        for (ShardWriter writer : writers) {
+            writer.close();
+        }
+        try {
+            for (ShardWriter writer : writers) {
+                writer.thread.join(5_000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A write queued for a shard and the future its caller waits on.
+     */
+    private record Write<T>(Function<BookService, T> operation, CompletableFuture<T> result) {
+        void run(BookService shard) {
+            try {
+                result.complete(operation.apply(shard));
+            } catch (Throwable e) {
+                // Fail only this write; the writer thread keeps serving the shard
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * One shard's writer thread. Each pass drains every write queued since the previous pass,
+     * up to {@link #MAX_WRITE_BATCH}, and runs them in order.
+     */
+    private static final class ShardWriter implements Runnable {
+        private final BookService shard;
+        private final BlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        // Guarded by this; no write is queued once set
+        private boolean closed;
+
+        ShardWriter(BookService shard, String name) {
+            this.shard = shard;
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        synchronized <T> Future<T> submit(Function<BookService, T> operation) {
+            if (closed) {
+                throw new IllegalStateException("Catalog is closed");
+            }
+            Write<T> write = new Write<>(operation, new CompletableFuture<>());
+            queue.add(write);
+            return write.result();
+        }
+
+        // Lets the writes already queued run, then stops the thread
+        synchronized void close() {
+            if (!closed) {
+                closed = true;
+                queue.add(new Write<>(shard -> null, null));
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Write<?>> batch = new ArrayList<>(MAX_WRITE_BATCH);
+            try {
+                while (true) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, MAX_WRITE_BATCH - 1);
+                    for (Write<?> write : batch) {
+                        if (write.result() == null) {
+                            return;
+                        }
+                        write.run(shard);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Next unread book of one shard's page.
+     */
+    private record PageHead(List<Book> items, int position, String key) {
+        static PageHead at(BookSort sort, List<Book> items, int position) {
+            return new PageHead(items, position, sort.cursorKey(items.get(position)));
+        }
+
+        Book book() {
+            return items.get(position);
+        }
+    }
+
+    // Runs a write on the shard's writer thread and waits for it
+    private <T> T write(String isbn, Function<BookService, T> operation) {
+        return await(writers[shardIndex(isbn)].submit(operation));
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Catalog write failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a catalog write", e);
+        }
+    }
+
+    private BookService shardOf(String isbn) {
+        return shards[shardIndex(isbn)];
+    }
+
+    // ISBN-10 and ISBN-13 spellings of a book pack to the same number and land on the same shard
+    private int shardIndex(String isbn) {
+        long packed = ISBNValidator.pack(isbn);
+        if (packed == ISBNValidator.INVALID) {
+            return 0;
+        }
+        long mixed = packed * 0x9E3779B97F4A7C15L;
+        return (int) ((mixed >>> 32) % shards.length);
+    }
+}
@@ -0,0 +1,86 @@
+package events;
+
+import model.Book;
+import org.junit.jupiter.api.Test;
+import service.BookService;
+import service.ColumnarLibrary;
+import service.Library;
+import service.MemberService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeStreamTest {
+
+    @Test
+    void publisherWaitingForSpaceDoesNotBlockLookups() throws Exception {
+        for (Library library : List.of(new BookService(), new ColumnarLibrary())) {
+            CountDownLatch release = new CountDownLatch(1);
+            List<ChangeEvent> received = new CopyOnWriteArrayList<>();
+            ChangeStream stream = new ChangeStream(2, 1);
+            stream.subscribe("slow", batch -> {
+                release.await();
+                received.addAll(batch);
+            }, 1);
+            library.setEventListener(stream);
+
+            // The subscriber holds the first event, the second fills the buffer
+            library.create("First", "Author", "9780306406157");
+            library.create("Second", "Author", "9781861972712");
+            CompletableFuture<Book> third = CompletableFuture.supplyAsync(
+                    () -> library.create("Third", "Author", "9780131103627"));
+            Thread.sleep(100);
+            assertFalse(third.isDone(), "the third creation should wait for the subscriber");
+
+            // Lookups, listings and other mutations go on while the third creation waits
+            CompletableFuture<Integer> others = CompletableFuture.supplyAsync(() -> {
+                library.findBookByIsbn("9780306406157").getIsbn();
+                library.findBookByTitle("Second");
+                return library.list().size();
+            });
+            assertEquals(2, others.get(5, TimeUnit.SECONDS));
+            assertNull(library.findBookByIsbn("9780131103627"), "a book is visible only once its creation is published");
+
+            release.countDown();
+            assertEquals("9780131103627", third.get(5, TimeUnit.SECONDS).getIsbn());
+            assertNotNull(library.findBookByIsbn("9780131103627"));
+            stream.close();
+
+            assertEquals(3, received.size());
+            for (int i = 1; i < received.size(); i++) {
+                assertEquals(received.get(i - 1).sequence() + 1, received.get(i).sequence());
+                assertFalse(received.get(i).timestamp().isBefore(received.get(i - 1).timestamp()));
+            }
+        }
+    }
+
+    @Test
+    void memberCreatedWhileWaitingIsNotDuplicated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ChangeStream stream = new ChangeStream(2, 1);
+        stream.subscribe("slow", batch -> release.await(), 1);
+        MemberService members = new MemberService();
+        members.setEventListener(stream);
+
+        members.create("A", "A", "a@example.com", "555", "Street");
+        members.create("B", "B", "b@example.com", "555", "Street");
+        CompletableFuture<?> waiting = CompletableFuture.supplyAsync(
+                () -> members.create("C", "C", "c@example.com", "555", "Street"));
+        Thread.sleep(100);
+
+        // The email being created is already taken; others can be looked up meanwhile
+        assertNull(members.create("C2", "C2", "C@example.com", "555", "Street"));
+        assertNotNull(members.findMemberByEmail("a@example.com"));
+        assertNull(members.findMemberByEmail("c@example.com"));
+
+        release.countDown();
+        assertNotNull(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(3, members.list().size());
+        stream.close();
+    }
+}
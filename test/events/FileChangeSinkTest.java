@@ -0,0 +1,41 @@
+package events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileChangeSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornLastLineIsCutOffBeforeAppending() throws IOException {
+        Path file = directory.resolve("changes.jsonl");
+        String complete = event(1).toJson() + "\n";
+        Files.writeString(file, complete + "{\"sequence\":2,\"ty", StandardCharsets.UTF_8);
+
+        assertEquals(1, FileChangeSink.lastSequence(file));
+        try (FileChangeSink sink = new FileChangeSink(file)) {
+            sink.onEvents(List.of(event(2)));
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(List.of(event(1).toJson(), event(2).toJson()), lines);
+        assertEquals(2, FileChangeSink.lastSequence(file));
+    }
+
+    private static ChangeEvent event(long sequence) {
+        return new ChangeEvent(sequence, ChangeEvent.Type.BOOK_CREATED, Instant.ofEpochSecond(sequence),
+                Map.of("isbn", "9780306406157"));
+    }
+}
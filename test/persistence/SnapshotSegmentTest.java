@@ -0,0 +1,92 @@
+package persistence;
+
+import model.Book;
+import model.Member;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.CatalogSegment;
+import service.LoanResult;
+import service.LoanService;
+import service.MappedLibrary;
+import service.MemberService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotSegmentTest {
+
+    private static final int BOOKS = 200;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotsReferToTheSegmentAndFoldTheDeltaAtStartup() throws IOException {
+        // First run: every book is created on the heap and snapshotted in full
+        Services first = recover();
+        for (int i = 0; i < BOOKS; i++) {
+            first.library.create("Title " + i, i % 2 == 0 ? "Even Author" : "Odd Author", isbn(i), 2);
+        }
+        Member member = first.members.create("A", "A", "a@example.com", "555", "Street");
+        assertEquals(LoanResult.Outcome.CHECKED_OUT,
+                first.loans.checkOut(member, first.library.findBookByIsbn(isbn(7))).outcome());
+        first.store.close();
+
+        // Second run: the books are folded into a segment, the loan still holds a copy
+        Services second = recover();
+        assertEquals(BOOKS, second.library.segment().size());
+        assertTrue(second.library.added().isEmpty());
+        assertEquals(List.of(CatalogSegment.fileName(second.library.segment().id())), segmentFiles());
+        Book loaned = second.library.findBookByIsbn(isbn(7));
+        assertEquals(1, loaned.getAvailableCopies());
+        assertEquals(1, second.loans.getActiveLoans(second.members.findMemberByEmail("a@example.com")).size());
+        assertEquals(BOOKS / 2, second.library.findBookByTitle("odd").size());
+        assertEquals(1, second.library.findBookByTitle("odd 199").size());
+
+        // A few changes stay in the snapshot instead of rewriting the segment
+        second.library.addCopies(isbn(3), 5);
+        second.library.create("Added", "Someone", isbn(BOOKS), 1);
+        int segmentId = second.library.segment().id();
+        second.store.close();
+
+        Services third = recover();
+        assertEquals(segmentId, third.library.segment().id());
+        assertEquals(7, third.library.findBookByIsbn(isbn(3)).getCopies());
+        assertEquals(List.of("Added"), third.library.added().stream().map(Book::getTitle).toList());
+        assertEquals(1, third.library.findBookByIsbn(isbn(7)).getAvailableCopies());
+        third.store.close();
+    }
+
+    private Services recover() throws IOException {
+        MappedLibrary library = new MappedLibrary(CatalogSegment.empty());
+        MemberService members = new MemberService();
+        LoanService loans = new LoanService();
+        LibraryStore store = new LibraryStore(directory, library, members, loans, 10_000, 64, 10);
+        store.recover();
+        return new Services(library, members, loans, store);
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.endsWith(".segment")).toList();
+        }
+    }
+
+    // Valid ISBN-13 with the given number in the publication digits
+    private static String isbn(int n) {
+        String digits = String.format("978%09d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    private record Services(MappedLibrary library, MemberService members, LoanService loans, LibraryStore store) {
+    }
+}
@@ -0,0 +1,60 @@
+package service;
+
+import model.Book;
+import model.Member;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutocompleteTest {
+
+    @Test
+    void indexesTheCatalogAtTheFirstQueryAndRanksByLoans() {
+        BookService catalog = new BookService();
+        catalog.create("The Pragmatic Programmer", "Andrew Hunt", "9780201616224");
+        catalog.create("Programming Pearls", "Jon Bentley", "9780201657883");
+        Autocomplete autocomplete = new Autocomplete(catalog);
+        catalog.setEventListener(autocomplete);
+
+        // Created after the autocomplete, before its first query
+        catalog.create("Programming Rust", "Jim Blandy", "9781491927281");
+
+        assertEquals(3, autocomplete.complete("progr", 10).size());
+        assertEquals(List.of("9780201657883"), isbns(autocomplete.complete("bentley", 10)));
+
+        // Created after the first query
+        catalog.create("Program Proofs", "Rustan Leino", "9780262546232");
+        assertEquals(List.of("9780262546232"), isbns(autocomplete.complete("leino", 10)));
+
+        Member member = new Member("A", "A", "a@example.com", "555", "Street");
+        LoanService loans = new LoanService();
+        loans.setEventListener(autocomplete);
+        Book rust = catalog.findBookByIsbn("9781491927281");
+        loans.checkOut(member, rust);
+        loans.returnBook(rust, member);
+        loans.checkOut(member, rust);
+
+        assertEquals("9781491927281", autocomplete.complete("progr", 1).get(0).getIsbn());
+        assertSame(rust, autocomplete.suggest("progarmming rus", 10).get(0));
+    }
+
+    @Test
+    void exactMatchRanksAboveMorePopularFuzzyMatch() {
+        BookService catalog = new BookService();
+        Book potter = catalog.create("Harry Potter", "J. K. Rowling", "9780747532699");
+        Book spy = catalog.create("Harriet the Spy", "Louise Fitzhugh", "9780440416791");
+        Autocomplete autocomplete = new Autocomplete(catalog);
+        for (int i = 0; i < 5; i++) {
+            autocomplete.recordLoan(spy);
+        }
+
+        assertEquals(List.of(potter, spy), autocomplete.suggest("harry", 10));
+        assertEquals(List.of(spy, potter), autocomplete.suggest("harr", 10));
+    }
+
+    private static List<String> isbns(List<Book> books) {
+        return books.stream().map(Book::getIsbn).toList();
+    }
+}
@@ -0,0 +1,25 @@
+package service;
+
+import model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    @Test
+    void shortTermsMatchInsideWords() {
+        BookSearchIndex index = new BookSearchIndex();
+        Book starWars = new Book("Star Wars", "George Lucas", "9780345341464");
+        Book armada = new Book("Armada", "Ernest Cline", "9780804137256");
+        index.add(starWars);
+        index.add(armada);
+
+        assertEquals(List.of(starWars), index.search("tar"));
+        assertEquals(List.of(armada, starWars), index.search("ar"));
+        assertEquals(List.of(starWars), index.search("r w"));
+        assertTrue(index.search("q").isEmpty());
+    }
+}
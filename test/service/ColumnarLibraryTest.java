@@ -0,0 +1,42 @@
+package service;
+
+import model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarLibraryTest {
+
+    @Test
+    void allZeroIsbnIsAnOrdinaryKey() {
+        ColumnarLibrary library = new ColumnarLibrary();
+        library.create("Real Book", "Author", "9780306406157");
+
+        assertNull(library.findBookByIsbn("0000000000000"));
+        assertTrue(library.addIsbn("0000000000000"));
+        assertFalse(library.addIsbn("0000000000000"));
+        assertEquals("Real Book", library.findBookByIsbn("9780306406157").getTitle());
+    }
+
+    @Test
+    void listingMergesRecordsAddedSinceThePreviousListing() {
+        ColumnarLibrary library = new ColumnarLibrary();
+        library.create("Dune", "Frank Herbert", "9780441172719");
+        library.create("Brave New World", "Aldous Huxley", "9780060850524");
+        assertEquals(List.of("Brave New World", "Dune"), titles(library.list(BookSort.TITLE, null, null, 10)));
+
+        library.create("Emma", "Jane Austen", "9780141439587");
+        library.create("Anna Karenina", "Leo Tolstoy", "9780143035008");
+        library.create("Catch-22", "Joseph Heller", "9781451626650");
+        assertEquals(List.of("Anna Karenina", "Brave New World", "Catch-22", "Dune", "Emma"),
+                titles(library.list(BookSort.TITLE, null, null, 10)));
+        assertEquals(List.of("Brave New World", "Emma", "Anna Karenina", "Dune", "Catch-22"),
+                titles(library.list(BookSort.ISBN, null, null, 10)));
+    }
+
+    private static List<String> titles(Page<Book> page) {
+        return page.items().stream().map(Book::getTitle).toList();
+    }
+}
@@ -0,0 +1,47 @@
+package service;
+
+import model.Book;
+import model.Hold;
+import model.Member;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HoldHandOffTest {
+
+    @Test
+    void addedCopiesGoToWaitingHoldersFirst() {
+        BookService books = new BookService();
+        LoanService loans = new LoanService();
+        books.setEventListener(loans.copyHandOff());
+        Book book = books.create("Title", "Author", "9780306406157");
+        Member borrower = new Member("A", "A", "a@example.com", "555", "Street");
+        Member holder = new Member("B", "B", "b@example.com", "555", "Street");
+
+        assertEquals(LoanResult.Outcome.CHECKED_OUT, loans.checkOut(borrower, book).outcome());
+        HoldResult placed = loans.placeHold(holder, book);
+        assertEquals(HoldResult.Outcome.PLACED, placed.outcome());
+        assertEquals(Hold.State.WAITING, placed.hold().getState());
+
+        books.addCopies("9780306406157", 2);
+
+        assertEquals(Hold.State.READY, placed.hold().getState());
+        assertNotNull(placed.hold().getPickupDeadline());
+        assertEquals(1, book.getAvailableCopies(), "only the copy nobody waits for reaches the shelf");
+        assertEquals(LoanResult.Outcome.CHECKED_OUT, loans.checkOut(holder, book).outcome());
+        assertEquals(Hold.State.FULFILLED, placed.hold().getState());
+    }
+
+    @Test
+    void cancelledHoldGetsNoDeadline() {
+        Hold hold = new Hold(new Member("A", "A", "a@example.com", "555", "Street"),
+                new Book("Title", "Author", "9780306406157"), LocalDate.of(2024, 1, 1));
+        assertTrue(hold.transition(Hold.State.WAITING, Hold.State.CANCELLED));
+
+        assertFalse(hold.markReady(LocalDate.of(2024, 1, 4)));
+        assertNull(hold.getPickupDeadline());
+        assertEquals(Hold.State.CANCELLED, hold.getState());
+    }
+}
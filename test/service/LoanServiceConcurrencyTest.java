@@ -0,0 +1,161 @@
+package service;
+
+import model.Book;
+import model.Loan;
+import model.Member;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hammers a few books from many threads and checks that no copy is lent twice, no return is
+ * lost, and the listener sees every return after the check-out it closes.
+ */
+class LoanServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+    private static final int COPIES = 3;
+
+    @Test
+    void concurrentCheckOutsAndReturnsKeepCopiesAndLoansConsistent() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            books.add(new Book("Title " + i, "Author", "978000000000" + i, COPIES));
+        }
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            members.add(new Member("Name", "Surname", "member" + i + "@example.com", "555", "Street"));
+        }
+
+        LoanService loans = new LoanService();
+        RecordingListener listener = new RecordingListener();
+        loans.setEventListener(listener);
+
+        AtomicInteger checkedOut = new AtomicInteger();
+        AtomicInteger returned = new AtomicInteger();
+        Queue<String> violations = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        Book book = books.get(random.nextInt(books.size()));
+                        Member member = members.get(random.nextInt(members.size()));
+                        // Members are shared, so the same pair races between check-out and return
+                        if (random.nextBoolean()) {
+                            if (loans.checkOut(member, book).outcome() == LoanResult.Outcome.CHECKED_OUT) {
+                                checkedOut.incrementAndGet();
+                            }
+                        } else if (loans.returnBook(book, member).outcome() == LoanResult.Outcome.RETURNED) {
+                            returned.incrementAndGet();
+                        }
+                        int available = book.getAvailableCopies();
+                        if (available < 0 || available > COPIES) {
+                            violations.add(book.getIsbn() + " has " + available + " copies available");
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(violations.isEmpty(), () -> String.join("\n", violations));
+        assertTrue(listener.violations.isEmpty(), () -> String.join("\n", listener.violations));
+        assertEquals(checkedOut.get(), listener.checkedOut.get());
+        assertEquals(returned.get(), listener.returned.get());
+
+        // Every copy that is off the shelf belongs to exactly one open loan
+        int open = 0;
+        for (Book book : books) {
+            int lent = 0;
+            for (Member member : members) {
+                for (Loan loan : loans.getActiveLoans(member)) {
+                    if (loan.getBook() == book) {
+                        lent++;
+                    }
+                }
+            }
+            assertEquals(COPIES - book.getAvailableCopies(), lent, book.getIsbn());
+            open += lent;
+        }
+        assertEquals(checkedOut.get() - returned.get(), open);
+        assertEquals(open, listener.published.size());
+
+        // Returning what is still out puts every copy back on the shelf
+        for (Member member : members) {
+            for (Loan loan : loans.getActiveLoans(member)) {
+                assertEquals(LoanResult.Outcome.RETURNED, loans.returnBook(loan.getBook(), member).outcome());
+            }
+        }
+        for (Book book : books) {
+            assertEquals(COPIES, book.getAvailableCopies(), book.getIsbn());
+        }
+    }
+
+    @Test
+    void restoringAnOpenLoanWithoutACopyFails() {
+        Book book = new Book("Title", "Author", "9780000000001", 1);
+        Member first = new Member("A", "A", "a@example.com", "555", "Street");
+        Member second = new Member("B", "B", "b@example.com", "555", "Street");
+        LoanService loans = new LoanService();
+
+        loans.restoreLoan(first, book, LocalDate.of(2024, 1, 1), null);
+
+        assertThrows(IllegalStateException.class,
+                () -> loans.restoreLoan(second, book, LocalDate.of(2024, 1, 2), null));
+        assertThrows(IllegalStateException.class,
+                () -> loans.restoreLoan(first, book, LocalDate.of(2024, 1, 3), null));
+        assertEquals(0, book.getAvailableCopies());
+        assertTrue(loans.getActiveLoans(second).isEmpty());
+    }
+
+    // Checks that each loan is published as checked out exactly once before it is published as returned
+    private static final class RecordingListener implements LibraryEventListener {
+        final Set<Loan> published = ConcurrentHashMap.newKeySet();
+        final Queue<String> violations = new ConcurrentLinkedQueue<>();
+        final AtomicInteger checkedOut = new AtomicInteger();
+        final AtomicInteger returned = new AtomicInteger();
+
+        @Override
+        public void bookCheckedOut(Loan loan) {
+            checkedOut.incrementAndGet();
+            if (!published.add(loan)) {
+                violations.add("Check-out published twice for " + loan.getBook().getIsbn());
+            }
+        }
+
+        @Override
+        public void bookReturned(Loan loan, long feeCents) {
+            returned.incrementAndGet();
+            if (!published.remove(loan)) {
+                violations.add("Return published before its check-out for " + loan.getBook().getIsbn());
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package service;
+
+import model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLibraryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void allZeroIsbnIsAnOrdinaryKey() throws IOException {
+        Path path = directory.resolve("catalog.segment");
+        CatalogSegment.write(path, List.of(new Book("Real Book", "Author", "9780306406157", 1)), 1);
+        MappedLibrary library = new MappedLibrary(CatalogSegment.open(path));
+        assertNull(library.findBookByIsbn("0000000000000"));
+        assertTrue(library.addIsbn("0000000000000"));
+
+        CatalogSegment.write(path, List.of(new Book("Real Book", "Author", "9780306406157", 1),
+                new Book("Zero", "Author", "0000000000000", 1)), 2);
+        library = new MappedLibrary(CatalogSegment.open(path));
+        assertEquals("Zero", library.findBookByIsbn("0000000000000").getTitle());
+        assertEquals("Real Book", library.findBookByIsbn("9780306406157").getTitle());
+    }
+}
@@ -0,0 +1,30 @@
+package service;
+
+import metrics.MetricsRegistry;
+import model.LedgerEntry;
+import model.Member;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberServiceTest {
+
+    @Test
+    void paymentIsDatedFromTheInjectedClock() {
+        LocalDate today = LocalDate.of(2031, 5, 17);
+        Clock clock = Clock.fixed(today.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        MemberService members = new MemberService(new MetricsRegistry(), clock);
+        Member member = members.create("Name", "Surname", "member@example.com", "555", "Street");
+        member.record(new LedgerEntry(LedgerEntry.Type.FEE, 1_000, LocalDate.of(2020, 1, 1), "Late return"));
+
+        assertEquals(400, members.recordPayment(member, 600));
+
+        List<LedgerEntry> ledger = member.getLedger();
+        assertEquals(today, ledger.get(ledger.size() - 1).date());
+    }
+}
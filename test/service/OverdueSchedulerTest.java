@@ -0,0 +1,51 @@
+package service;
+
+import model.Book;
+import model.Member;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverdueSchedulerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restartDoesNotRepeatNotices() throws IOException {
+        LoanService loans = new LoanService();
+        Book book = new Book("Title", "Author", "9780306406157", 1);
+        Member member = new Member("Name", "Surname", "member@example.com", "555", "Street");
+        loans.restoreLoan(member, book, LocalDate.of(2024, 1, 1), null);
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        Path state = dir.resolve("overdue-processed");
+
+        AtomicInteger notices = new AtomicInteger();
+        OverdueScheduler first = new OverdueScheduler(loans, (loan, date, fee) -> notices.incrementAndGet(), state);
+        first.recover();
+        assertEquals(1, first.runFor(today));
+        assertEquals(today.toString(), Files.readString(state));
+
+        OverdueScheduler restarted = new OverdueScheduler(loans, (loan, date, fee) -> notices.incrementAndGet(), state);
+        restarted.recover();
+        assertEquals(0, restarted.runFor(today));
+        assertEquals(0, restarted.runFor(today.plusDays(1)));
+        assertEquals(1, notices.get());
+    }
+
+    @Test
+    void malformedStateFailsRecovery() throws IOException {
+        Path state = Files.writeString(dir.resolve("overdue-processed"), "yesterday");
+        OverdueScheduler scheduler = new OverdueScheduler(new LoanService(), (loan, date, fee) -> {
+        }, state);
+
+        assertThrows(IOException.class, scheduler::recover);
+    }
+}
@@ -0,0 +1,90 @@
+package service;
+
+import metrics.MetricsRegistry;
+import model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedLibraryTest {
+
+    @Test
+    void titleSearchRanksAcrossShards() {
+        try (ShardedLibrary library = new ShardedLibrary(4, new MetricsRegistry())) {
+            // Partial matches spread over every shard, then the exact title last
+            for (int i = 0; i < 40; i++) {
+                library.create("Dune Messiah volume " + i, "Author", isbn(i));
+            }
+            library.create("Dune", "Frank Herbert", isbn(40));
+
+            List<Book> found = library.findBookByTitle("dune");
+
+            assertEquals(41, found.size());
+            assertEquals("Dune", found.get(0).getTitle());
+        }
+    }
+
+    @Test
+    void concurrentWritesAllLand() throws Exception {
+        try (ShardedLibrary library = new ShardedLibrary(4, new MetricsRegistry())) {
+            List<CompletableFuture<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int first = t * 250;
+                writers.add(CompletableFuture.runAsync(() -> {
+                    for (int i = first; i < first + 250; i++) {
+                        assertTrue(library.addIsbn(isbn(i)));
+                        library.create("Title " + i, "Author", isbn(i));
+                        library.addCopies(isbn(i), 1);
+                    }
+                }));
+            }
+            CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            assertEquals(2_000, library.list().size());
+            for (int i = 0; i < 2_000; i++) {
+                assertEquals(2, library.findBookByIsbn(isbn(i)).getCopies());
+            }
+        }
+    }
+
+    @Test
+    void writesAfterCloseAreRejected() {
+        ShardedLibrary library = new ShardedLibrary(2, new MetricsRegistry());
+        library.create("Title", "Author", isbn(0));
+        library.close();
+
+        assertThrows(IllegalStateException.class, () -> library.create("Other", "Author", isbn(1)));
+    }
+
+    @Test
+    void errorInAWriteFailsOnlyThatWrite() {
+        try (ShardedLibrary library = new ShardedLibrary(1, new MetricsRegistry())) {
+            library.setEventListener(new LibraryEventListener() {
+                @Override
+                public void bookCreated(Book book) {
+                    if (book.getTitle().equals("Poison")) {
+                        throw new AssertionError("listener failed");
+                    }
+                }
+            });
+
+            assertThrows(AssertionError.class, () -> library.create("Poison", "Author", isbn(0)));
+            assertEquals("Title", library.create("Title", "Author", isbn(1)).getTitle());
+        }
+    }
+
+    // Valid ISBN-13 with the given sequence number
+    private static String isbn(int i) {
+        String body = String.format("978%09d", i);
+        int sum = 0;
+        for (int d = 0; d < 12; d++) {
+            sum += (body.charAt(d) - '0') * (d % 2 == 0 ? 1 : 3);
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,38 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Status-ordered listings must reject cursors whose status ordinal is out of range or not a number.
+ */
+class StatusCursorTest {
+
+    @Test
+    void malformedStatusPhaseIsRejected() {
+        for (Library library : List.of(new BookService(), new ColumnarLibrary())) {
+            library.create("Title", "Author", "9780306406157");
+            for (String key : List.of("-1:9780306406157", "99:9780306406157", "x:9780306406157")) {
+                IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                        () -> library.list(BookSort.STATUS, null, Page.encodeCursor(key), 10));
+                assertEquals("Malformed cursor", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    void validStatusCursorContinuesTheListing() {
+        BookService library = new BookService();
+        library.create("First", "Author", "9780306406157");
+        library.create("Second", "Author", "9781861972712");
+
+        Page<?> first = library.list(BookSort.STATUS, null, null, 1);
+        Page<?> second = library.list(BookSort.STATUS, null, first.nextCursor(), 1);
+
+        assertEquals(1, second.items().size());
+        assertNotEquals(first.items().get(0), second.items().get(0));
+    }
+}